@@ -29,6 +29,14 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+    testOptions {
+        unitTests.all {
+            // Reenvía -Dsoak.* (duración, fps, umbrales) a PipelineSoakTest
+            System.getProperties().stringPropertyNames()
+                .filter { name -> name.startsWith("soak.") }
+                .forEach { name -> it.systemProperty(name, System.getProperty(name)) }
+        }
+    }
 }
 
 dependencies {
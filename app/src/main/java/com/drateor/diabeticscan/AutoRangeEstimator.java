@@ -0,0 +1,142 @@
+package com.drateor.diabeticscan;
+
+import java.util.Arrays;
+
+/**
+ * Estima el rango de temperatura a mostrar a partir de cada frame.
+ *
+ * Un histograma de cubetas fijas, llenado en una sola pasada, da los percentiles bajo y alto
+ * sin ordenar nada, así los píxeles sueltos muy calientes o fríos no estiran el rango.
+ * El resultado se suaviza en el tiempo y solo se mueve cuando el cambio supera una histéresis,
+ * para que los colores y la escala no parpadeen. O(píxeles) por frame y sin reservas de memoria.
+ */
+class AutoRangeEstimator {
+
+    /**
+     * Histograma de -20 °C a 120 °C; lo que queda fuera cae en la primera o la última cubeta
+     */
+    private static final int HISTOGRAM_MIN_RAW = ThermalFrame.toRaw(-20.0) & 0xFFFF;
+    private static final int HISTOGRAM_MAX_RAW = ThermalFrame.toRaw(120.0) & 0xFFFF;
+    private static final int BUCKETS = 1024;
+
+    /**
+     * Rango mínimo mostrado (1 °C), para no amplificar el ruido de una escena uniforme
+     */
+    private static final int MIN_SPAN_RAW = 100;
+
+    private final int[] histogram = new int[BUCKETS];
+    private final float bucketWidth = (HISTOGRAM_MAX_RAW - HISTOGRAM_MIN_RAW) / (float) BUCKETS;
+
+    private final float lowPercentile;
+    private final float highPercentile;
+    private final float smoothing;
+    private final int hysteresisRaw;
+
+    private boolean initialized = false;
+    private float smoothedMin;
+    private float smoothedMax;
+    private int displayMin;
+    private int displayMax;
+
+    AutoRangeEstimator() {
+        this(1f, 99f, 0.2f, 0.3f);
+    }
+
+    /**
+     * @param lowPercentile    percentil inferior (0–100)
+     * @param highPercentile   percentil superior (0–100)
+     * @param smoothing        peso del frame nuevo en el promedio exponencial (0–1]
+     * @param hysteresisCelsius cambio mínimo para mover el rango mostrado
+     */
+    AutoRangeEstimator(float lowPercentile, float highPercentile, float smoothing, float hysteresisCelsius) {
+        this.lowPercentile = lowPercentile;
+        this.highPercentile = highPercentile;
+        this.smoothing = smoothing;
+        this.hysteresisRaw = Math.round(hysteresisCelsius * 100f);
+    }
+
+    /**
+     * Incorpora un frame al estimador
+     */
+    void update(ThermalFrame frame) {
+        short[] raw = frame.raw;
+        if (raw.length == 0) return;
+
+        Arrays.fill(histogram, 0);
+        float toBucket = BUCKETS / (float) (HISTOGRAM_MAX_RAW - HISTOGRAM_MIN_RAW);
+        for (short value : raw) {
+            int bucket = (int) (((value & 0xFFFF) - HISTOGRAM_MIN_RAW) * toBucket);
+            if (bucket < 0) bucket = 0;
+            else if (bucket >= BUCKETS) bucket = BUCKETS - 1;
+            histogram[bucket]++;
+        }
+
+        int lowRank = (int) (raw.length * lowPercentile / 100f);
+        int highRank = Math.min(raw.length - 1, (int) (raw.length * highPercentile / 100f));
+        int lowBucket = -1;
+        int highBucket = BUCKETS - 1;
+        int cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += histogram[i];
+            if (lowBucket < 0 && cumulative > lowRank) lowBucket = i;
+            if (cumulative > highRank) {
+                highBucket = i;
+                break;
+            }
+        }
+
+        float frameMin = HISTOGRAM_MIN_RAW + lowBucket * bucketWidth;
+        float frameMax = HISTOGRAM_MIN_RAW + (highBucket + 1) * bucketWidth;
+
+        if (!initialized) {
+            smoothedMin = frameMin;
+            smoothedMax = frameMax;
+        } else {
+            smoothedMin += smoothing * (frameMin - smoothedMin);
+            smoothedMax += smoothing * (frameMax - smoothedMax);
+        }
+
+        // El rango mínimo se aplica antes de la histéresis, así una escena uniforme tampoco parpadea
+        float targetMin = smoothedMin;
+        float targetMax = smoothedMax;
+        if (targetMax - targetMin < MIN_SPAN_RAW) {
+            float center = (targetMin + targetMax) / 2f;
+            targetMin = center - MIN_SPAN_RAW / 2f;
+            targetMax = center + MIN_SPAN_RAW / 2f;
+        }
+
+        if (!initialized) {
+            displayMin = Math.round(targetMin);
+            displayMax = Math.round(targetMax);
+            initialized = true;
+            return;
+        }
+        if (Math.abs(targetMin - displayMin) > hysteresisRaw) displayMin = Math.round(targetMin);
+        if (Math.abs(targetMax - displayMax) > hysteresisRaw) displayMax = Math.round(targetMax);
+        if (displayMax - displayMin < MIN_SPAN_RAW) {
+            displayMin = Math.round(targetMin);
+            displayMax = Math.round(targetMax);
+        }
+    }
+
+    /**
+     * Límite inferior del rango mostrado, en centésimas de Kelvin
+     */
+    int getMinRaw() {
+        return displayMin;
+    }
+
+    /**
+     * Límite superior del rango mostrado, en centésimas de Kelvin
+     */
+    int getMaxRaw() {
+        return displayMax;
+    }
+
+    /**
+     * Olvida el historial, por ejemplo al cambiar de cámara o de escena
+     */
+    void reset() {
+        initialized = false;
+    }
+}
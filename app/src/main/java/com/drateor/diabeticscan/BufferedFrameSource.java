@@ -0,0 +1,145 @@
+package com.drateor.diabeticscan;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Desacopla una fuente de frames de quien los procesa: cada frame se copia a un buffer propio
+ * y se entrega en un hilo dedicado a esta fuente.
+ *
+ * Si el hilo sigue ocupado cuando llega otro frame, el pendiente se reemplaza por el más nuevo.
+ * Así, con varias cámaras, una lenta no frena el hilo de entrega del SDK ni a las demás.
+ * Los buffers se reutilizan: como máximo hay tres por fuente (en copia, pendiente y en proceso).
+ */
+class BufferedFrameSource implements FrameSource {
+
+    private final FrameSource source;
+    private final String threadName;
+    private final Object lock = new Object();
+    private final AtomicLong framesDropped = new AtomicLong();
+
+    // Protegidos por lock
+    private final ArrayDeque<ThermalFrame> free = new ArrayDeque<>();
+    private ThermalFrame pending;
+    private boolean drainScheduled = false;
+    private ExecutorService executor;
+    private Callback callback;
+
+    BufferedFrameSource(FrameSource source, String threadName) {
+        this.source = source;
+        this.threadName = threadName;
+    }
+
+    @Override
+    public void start(Callback callback) {
+        synchronized (lock) {
+            if (executor != null) return;
+            this.callback = callback;
+            executor = Executors.newSingleThreadExecutor(r -> new Thread(r, threadName));
+        }
+
+        source.start(new Callback() {
+            @Override
+            public void onFrame(ThermalFrame frame) {
+                offer(frame);
+            }
+
+            @Override
+            public void onError(String message) {
+                callback.onError(message);
+            }
+        });
+    }
+
+    /**
+     * Detiene la fuente y espera a que termine el frame en proceso
+     */
+    @Override
+    public void stop() {
+        source.stop();
+
+        ExecutorService current;
+        synchronized (lock) {
+            current = executor;
+            executor = null;
+            if (pending != null) free.add(pending);
+            pending = null;
+        }
+        if (current == null) return;
+
+        current.shutdown();
+        try {
+            current.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return source.isStreaming();
+    }
+
+    /**
+     * Frames reemplazados por otro más nuevo antes de llegar a procesarse
+     */
+    long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    /**
+     * En el hilo de la fuente: copia el frame y lo deja pendiente
+     */
+    private void offer(ThermalFrame frame) {
+        ThermalFrame buffer;
+        synchronized (lock) {
+            if (executor == null) return;
+            buffer = free.poll();
+        }
+        if (buffer == null || !buffer.sameSize(frame)) buffer = new ThermalFrame(frame.width, frame.height);
+        buffer.copyFrom(frame);
+
+        synchronized (lock) {
+            if (executor == null) return;
+            if (pending != null) {
+                framesDropped.incrementAndGet();
+                free.add(pending);
+            }
+            pending = buffer;
+            if (!drainScheduled) {
+                drainScheduled = true;
+                executor.execute(this::drain);
+            }
+        }
+    }
+
+    /**
+     * En el hilo propio: procesa los frames pendientes hasta que no quede ninguno
+     */
+    private void drain() {
+        while (true) {
+            ThermalFrame frame;
+            Callback current;
+            synchronized (lock) {
+                frame = pending;
+                pending = null;
+                current = callback;
+                if (frame == null) {
+                    drainScheduled = false;
+                    return;
+                }
+            }
+            try {
+                current.onFrame(frame);
+            } catch (RuntimeException e) {
+                current.onError(String.valueOf(e));
+            }
+            synchronized (lock) {
+                free.add(frame);
+            }
+        }
+    }
+}
@@ -4,42 +4,54 @@ import static android.content.ContentValues.TAG;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.PowerManager;
 import android.util.Log;
 import android.widget.TextView;
 
-import com.flir.thermalsdk.androidsdk.image.BitmapAndroid;
-import com.flir.thermalsdk.image.ImageColorizer;
-import com.flir.thermalsdk.image.Palette;
-import com.flir.thermalsdk.image.PaletteManager;
-import com.flir.thermalsdk.image.fusion.FusionMode;
-import com.flir.thermalsdk.live.Camera;
-import com.flir.thermalsdk.live.CameraInformation;
 import com.flir.thermalsdk.live.CommunicationInterface;
-import com.flir.thermalsdk.live.ConnectParameters;
 import com.flir.thermalsdk.live.Identity;
 import com.flir.thermalsdk.live.connectivity.ConnectionStatusListener;
 import com.flir.thermalsdk.live.discovery.DiscoveryEventListener;
 import com.flir.thermalsdk.live.discovery.DiscoveryFactory;
-import com.flir.thermalsdk.live.remote.Calibration;
-import com.flir.thermalsdk.live.remote.RemoteControl;
-import com.flir.thermalsdk.live.streaming.Stream;
-import com.flir.thermalsdk.live.streaming.ThermalStreamer;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Clase encargada del manejo de la cámara FLIR.
+ * Clase encargada del manejo de las cámaras FLIR.
  * Realiza conexión, descubrimiento, NUC, y streaming térmico.
+ *
+ * Puede tener varias cámaras conectadas a la vez (por ejemplo, una por pie), cada una en su
+ * {@link CameraSession} con pipeline, buffers e hilo propios. Los métodos sin cámara explícita
+ * operan sobre la principal, la primera que se conectó.
  */
 public class CameraHandlerPrincipal {
 
     public interface StreamDataListener {
         void images(Bitmap thermalImage, Bitmap thermalScale, String information);
+
+        /**
+         * Rango de temperatura de la escala; solo se llama cuando cambia
+         */
+        default void scaleRange(float minCelsius, float maxCelsius) {
+        }
+
+        /**
+         * Escala e información del stream cuando hay vista previa directa, que reemplaza a
+         * {@link #images}; solo se llama cuando cambian
+         */
+        default void scale(Bitmap thermalScale, String information) {
+        }
     }
 
     public interface DiscoveryStatus {
@@ -48,23 +60,60 @@ public class CameraHandlerPrincipal {
         void stopped();
     }
 
+    /**
+     * Identificador de la sesión de fuentes sin cámara (sintética, grabaciones)
+     */
+    static final String LOCAL_SOURCE_ID = "local";
+
+    /**
+     * Inferencia en vivo cada 9 frames, alrededor de una por segundo en una FLIR One
+     */
+    static final int LIVE_INFERENCE_INTERVAL = 9;
+
     private final Context context;
-    private StreamDataListener streamDataListener;
 
-    private final LinkedList<Identity> foundCameraIdentities = new LinkedList<>();
-    private Camera camera;
-    private Stream connectedStream;
-    private ThermalStreamer streamer;
+    private final CopyOnWriteArrayList<Identity> foundCameraIdentities = new CopyOnWriteArrayList<>();
+    /**
+     * Sesiones por identificador de cámara, en orden de conexión; la primera es la principal.
+     * El lock solo protege el mapa: cada sesión se opera con su propio monitor.
+     */
+    private final LinkedHashMap<String, CameraSession> sessions = new LinkedHashMap<>();
+    private volatile ThermalPreviewView preview;
+    private volatile ThermalPalette palette = ThermalPalette.RAINBOW;
+    private volatile FramePipeline.FrameClassifier liveClassifier;
+    private volatile boolean emulatorsEnabled = false;
+    private volatile FramePipeline.ClassificationListener liveClassificationListener;
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
 
     public CameraHandlerPrincipal(Context context) {
         this.context = context;
     }
 
     /**
-     * Inicia descubrimiento USB
+     * Incluye los emuladores del SDK en el descubrimiento, para probar varias cámaras sin hardware.
+     * Solo en compilaciones de depuración y a pedido explícito: sus frames son falsos y no deben
+     * llegar a la galería ni a la sincronización. Llamar antes de iniciar el descubrimiento.
+     */
+    void setEmulatorsEnabled(boolean enabled) {
+        boolean debuggable = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        emulatorsEnabled = enabled && debuggable;
+        if (enabled && !debuggable) Log.w(TAG, "Emuladores ignorados fuera de una compilación de depuración");
+    }
+
+    boolean areEmulatorsEnabled() {
+        return emulatorsEnabled;
+    }
+
+    static boolean isEmulator(Identity identity) {
+        return identity.communicationInterface == CommunicationInterface.EMULATOR;
+    }
+
+    /**
+     * Inicia descubrimiento USB, y de los emuladores del SDK si se habilitaron
+     * ({@link #setEmulatorsEnabled})
      */
     public void startDiscovery(DiscoveryEventListener listener, DiscoveryStatus callback) {
-        DiscoveryFactory.getInstance().scan(listener, CommunicationInterface.USB);
+        DiscoveryFactory.getInstance().scan(listener, discoveryInterfaces());
         callback.started();
     }
 
@@ -72,48 +121,85 @@ public class CameraHandlerPrincipal {
      * Detiene descubrimiento USB
      */
     public void stopDiscovery(DiscoveryStatus callback) {
-        DiscoveryFactory.getInstance().stop(CommunicationInterface.USB);
+        DiscoveryFactory.getInstance().stop(discoveryInterfaces());
         callback.stopped();
     }
 
+    private CommunicationInterface[] discoveryInterfaces() {
+        return emulatorsEnabled
+                ? new CommunicationInterface[]{CommunicationInterface.USB, CommunicationInterface.EMULATOR}
+                : new CommunicationInterface[]{CommunicationInterface.USB};
+    }
+
     /**
-     * Conecta a una cámara FLIR
+     * Conecta a una cámara FLIR. Las demás cámaras conectadas siguen funcionando.
      */
-    public synchronized void connect(Identity identity, ConnectionStatusListener statusListener) throws IOException {
-        Log.d(TAG, "Conectando a cámara: " + identity);
-        camera = new Camera();
-        camera.connect(identity, statusListener, new ConnectParameters());
+    public void connect(Identity identity, ConnectionStatusListener statusListener) throws IOException {
+        CameraSession session;
+        boolean created;
+        synchronized (sessions) {
+            created = !sessions.containsKey(identity.deviceId);
+            session = session(identity);
+        }
+        try {
+            session.connect(statusListener);
+        } catch (IOException | RuntimeException e) {
+            // Una cámara que no conectó no debe quedar como sesión (ni como principal)
+            if (created) disconnect(identity);
+            throw e;
+        }
     }
 
     /**
-     * Desconecta cámara FLIR
+     * Desconecta todas las cámaras
      */
-    public synchronized void disconnect() {
-        Log.d(TAG, "Desconectando cámara...");
-        if (camera == null) return;
-
-        if (connectedStream != null && connectedStream.isStreaming()) {
-            connectedStream.stop();
+    public void disconnect() {
+        List<CameraSession> all;
+        synchronized (sessions) {
+            all = new ArrayList<>(sessions.values());
+            sessions.clear();
         }
-
-        camera.disconnect();
-        camera = null;
+        for (CameraSession session : all) session.disconnect();
+        stopThermalMonitoring();
     }
 
     /**
-     * Ejecuta calibración térmica NUC (Non-Uniformity Correction)
+     * Desconecta una cámara; las demás siguen transmitiendo
      */
-    public synchronized void performNuc() {
-        Log.d(TAG, "Ejecutando NUC...");
-        if (camera == null) return;
+    public void disconnect(Identity identity) {
+        disconnect(identity.deviceId);
+    }
 
-        RemoteControl rc = camera.getRemoteControl();
-        if (rc == null) return;
+    /**
+     * Detiene la fuente sin cámara (grabación, sintética) y libera su sesión, así la próxima
+     * cámara que se conecte pasa a ser la principal
+     */
+    void stopLocalStream() {
+        disconnect(LOCAL_SOURCE_ID);
+    }
 
-        Calibration calibration = rc.getCalibration();
-        if (calibration != null) {
-            calibration.nuc().executeSync();
+    private void disconnect(String id) {
+        CameraSession session;
+        CameraSession next = null;
+        synchronized (sessions) {
+            boolean wasPrimary = primary() == sessions.get(id);
+            session = sessions.remove(id);
+            // La vista previa principal pasa a la siguiente cámara
+            if (session != null && wasPrimary) next = primary();
         }
+        if (session == null) return;
+        session.disconnect();
+        session.getPipeline().setClassifier(null, 1, null);
+        if (next != null) makePrimary(next);
+        if (getStreamingCameraCount() == 0) stopThermalMonitoring();
+    }
+
+    /**
+     * Ejecuta calibración térmica NUC (Non-Uniformity Correction) en todas las cámaras conectadas
+     */
+    public void performNuc() {
+        Log.d(TAG, "Ejecutando NUC...");
+        for (CameraSession session : sessions()) session.performNuc();
     }
 
     /**
@@ -129,73 +215,185 @@ public class CameraHandlerPrincipal {
 
 
     /**
-     * Inicia el flujo de imágenes térmicas desde la cámara
+     * Inicia el flujo de imágenes térmicas desde la cámara principal
      */
-    public synchronized void startStream(StreamDataListener listener) {
-        this.streamDataListener = listener;
+    public void startStream(StreamDataListener listener) {
+        CameraSession session = primary();
+        if (session == null) {
+            Log.e(TAG, "No se puede iniciar el stream: no hay cámara conectada.");
+            return;
+        }
+        if (session.startStream(listener)) startThermalMonitoring(session);
+    }
 
-        if (camera == null || !camera.isConnected()) {
-            Log.e(TAG, "No se puede iniciar el stream: cámara nula o desconectada.");
+    /**
+     * Inicia el flujo de una cámara en particular; con listener null solo alimenta su vista previa,
+     * las capturas y la inferencia
+     */
+    public void startStream(Identity identity, @Nullable StreamDataListener listener) {
+        CameraSession session;
+        synchronized (sessions) {
+            session = sessions.get(identity.deviceId);
+        }
+        if (session == null) {
+            Log.e(TAG, "No se puede iniciar el stream: cámara no conectada " + identity);
             return;
         }
+        if (session.startStream(listener)) startThermalMonitoring(session);
+    }
+
+    /**
+     * Inicia el pipeline sobre cualquier fuente de frames (cámara, sintética, ...)
+     */
+    void startStream(FrameSource source, StreamDataListener listener) {
+        CameraSession session = primary();
+        if (session == null) session = session(LOCAL_SOURCE_ID, null);
+        session.startStream(source, listener);
+        startThermalMonitoring(session);
+    }
+
+    /**
+     * Dibuja los frames de la cámara principal directamente en la vista previa, desde el hilo
+     * de la cámara, en lugar de entregarlos como Bitmap a {@link StreamDataListener#images}
+     */
+    void setPreview(ThermalPreviewView preview) {
+        this.preview = preview;
+        CameraSession session = primary();
+        if (session != null) session.setPreview(preview);
+    }
+
+    /**
+     * Vista previa propia para una cámara que no es la principal
+     */
+    void setPreview(Identity identity, ThermalPreviewView preview) {
+        session(identity).setPreview(preview);
+    }
+
+    /**
+     * Detiene el flujo de todas las cámaras
+     */
+    public void stopStream() {
+        for (CameraSession session : sessions()) session.stopStream();
+        stopThermalMonitoring();
+    }
+
+    public int getStreamingCameraCount() {
+        int count = 0;
+        for (CameraSession session : sessions()) {
+            if (session.isStreaming()) count++;
+        }
+        return count;
+    }
 
-        connectedStream = camera.getStreams().get(0);
-        if (!connectedStream.isThermal()) {
-            Log.e(TAG, "Stream no es térmico.");
+    /**
+     * El estado térmico del equipo fija un nivel de calidad mínimo en los pipelines (Android 10+)
+     */
+    private synchronized void startThermalMonitoring(CameraSession session) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return;
+        PowerManager powerManager = context.getSystemService(PowerManager.class);
+        if (powerManager == null) return;
+        session.getPipeline().getGovernor().setThermalStatus(powerManager.getCurrentThermalStatus());
+        if (thermalListener != null) return;
+
+        thermalListener = status -> {
+            for (CameraSession current : sessions()) current.getPipeline().getGovernor().setThermalStatus(status);
+        };
+        powerManager.addThermalStatusListener(context.getMainExecutor(), thermalListener);
+    }
+
+    private synchronized void stopThermalMonitoring() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || thermalListener == null) return;
+        PowerManager powerManager = context.getSystemService(PowerManager.class);
+        if (powerManager != null) powerManager.removeThermalStatusListener(thermalListener);
+        thermalListener = null;
+    }
+
+    /**
+     * Captura el próximo frame apto de la cámara principal según el filtro de calidad
+     */
+    void requestCapture(FramePipeline.CaptureCallback callback) {
+        CameraSession session = primary();
+        if (session == null) {
+            callback.onRejected("No hay cámara conectada");
             return;
         }
+        session.getPipeline().requestCapture(callback);
+    }
 
-        streamer = new ThermalStreamer(connectedStream);
+    /**
+     * Captura a la vez en todas las cámaras que transmiten (por ejemplo, una por pie),
+     * con frames alineados en el tiempo dentro de {@link PairedCapture#DEFAULT_TOLERANCE_NANOS}
+     */
+    void requestPairedCapture(PairedCapture.Callback callback) {
+        Map<String, FramePipeline> pipelines = new LinkedHashMap<>();
+        for (CameraSession session : sessions()) {
+            if (session.isStreaming()) pipelines.put(session.getId(), session.getPipeline());
+        }
+        new PairedCapture(pipelines, PairedCapture.DEFAULT_TOLERANCE_NANOS, callback).start();
+    }
 
-        connectedStream.start(
-                unused -> {
-                    streamer.update();
-                    //0 iron ---Flir
-                    //1 artic --- Flir
-                    //2 blackhot
-                    //3 bw -- Flir gris
-                    //4 coldest -- Flir
-                    //5 wheel_redhot
-                    //6 colorwheel6
-                    //7 colorwheel12
-                    //8 doublerainbow2
-                    //9 lava --- Flir
-                    //10 rainbow ---Flir
-                    //11 rainicHC
-                    //12 whitehot
-                    //13 Hottset -- FLir
-                    final Bitmap[] thermalScaleBitmap = new Bitmap[1];
-                    final String[] info = new String[1];
+    /**
+     * Cambia la paleta de todas las cámaras sin reiniciar los streams
+     */
+    void setPalette(ThermalPalette palette) {
+        this.palette = palette;
+        for (CameraSession session : sessions()) session.getPipeline().setPalette(palette);
+    }
 
-                    Palette palette = PaletteManager.getDefaultPalettes().get(10); // rainbow
+    ThermalPalette getPalette() {
+        return palette;
+    }
 
-                    streamer.withThermalImage(thermalImage -> {
-                        //TERMAL ONLY
-                        Objects.requireNonNull(thermalImage.getFusion()).setFusionMode(FusionMode.THERMAL_ONLY);
-                        thermalImage.setPalette(palette);
+    /**
+     * Inferencia en vivo sobre la cámara principal, cada {@value #LIVE_INFERENCE_INTERVAL} frames
+     * aptos (null para desactivarla). El resultado llega en el hilo de inferencia.
+     */
+    void setLiveClassifier(FramePipeline.FrameClassifier classifier, FramePipeline.ClassificationListener listener) {
+        this.liveClassifier = classifier;
+        this.liveClassificationListener = listener;
+        CameraSession session = primary();
+        if (session != null) session.getPipeline().setClassifier(classifier, LIVE_INFERENCE_INTERVAL, listener);
+    }
 
-                        ImageColorizer colorizer = new ImageColorizer(thermalImage);
-                        colorizer.setAutoScale(true);
-                        colorizer.setRenderScale(true);
-                        colorizer.update();
+    /**
+     * Estadísticas del pipeline de la cámara principal (fps, latencias, inferencias)
+     */
+    PipelineStats getPipelineStats() {
+        CameraSession session = primary();
+        return session != null ? session.getPipeline().getStats() : new PipelineStats();
+    }
 
-                        thermalScaleBitmap[0] = BitmapAndroid.createBitmap(
-                                Objects.requireNonNull(colorizer.getScaleImage())).getBitMap();
+    /**
+     * Empieza a grabar los frames radiométricos crudos de la cámara principal en el archivo indicado.
+     * El archivo se abre con el primer frame, cuando se conoce la resolución.
+     */
+    public void startRecording(File file) {
+        CameraSession session = primary();
+        if (session != null) session.startRecording(file);
+    }
 
-                        info[0] = palette.toString();
-                    });
+    /**
+     * Detiene la grabación y escribe el índice de frames
+     */
+    public void stopRecording() {
+        for (CameraSession session : sessions()) session.stopRecording();
+    }
 
-                    Bitmap thermalBitmap = BitmapAndroid.createBitmap(streamer.getImage()).getBitMap();
-                    streamDataListener.images(thermalBitmap, thermalScaleBitmap[0], info[0]);
-                },
-                error -> Log.e(TAG, "Error durante el streaming: " + error)
-        );
+    public boolean isRecording() {
+        for (CameraSession session : sessions()) {
+            if (session.isRecording()) return true;
+        }
+        return false;
     }
 
     /**
-     * Agrega cámara descubierta
+     * Agrega cámara descubierta; el descubrimiento puede reportar la misma cámara más de una vez
      */
     public void add(Identity identity) {
+        if (isEmulator(identity) && !emulatorsEnabled) return;
+        for (Identity found : foundCameraIdentities) {
+            if (found.deviceId.equals(identity.deviceId)) return;
+        }
         foundCameraIdentities.add(identity);
     }
 
@@ -211,17 +409,65 @@ public class CameraHandlerPrincipal {
     }
 
     /**
-     * Obtiene información del dispositivo conectado
+     * Todas las cámaras encontradas, USB primero y luego emuladores (solo si se habilitaron)
+     */
+    public List<Identity> getCameraIdentities() {
+        List<Identity> identities = new ArrayList<>();
+        for (Identity identity : foundCameraIdentities) {
+            if (identity.communicationInterface == CommunicationInterface.USB) identities.add(identity);
+        }
+        for (Identity identity : foundCameraIdentities) {
+            if (identity.communicationInterface == CommunicationInterface.EMULATOR) identities.add(identity);
+        }
+        return identities;
+    }
+
+    /**
+     * Obtiene información de la cámara principal
      */
     public String getDeviceInfo() {
-        if (camera == null) return "No disponible";
+        CameraSession session = primary();
+        return session != null ? session.getDeviceInfo() : "No disponible";
+    }
 
-        RemoteControl rc = camera.getRemoteControl();
-        if (rc == null) return "No disponible";
+    /**
+     * La principal recibe la vista previa y la inferencia en vivo
+     */
+    private void makePrimary(CameraSession session) {
+        session.setPreview(preview);
+        session.getPipeline().setClassifier(liveClassifier, LIVE_INFERENCE_INTERVAL, liveClassificationListener);
+    }
+
+    @Nullable
+    private CameraSession primary() {
+        synchronized (sessions) {
+            return sessions.isEmpty() ? null : sessions.values().iterator().next();
+        }
+    }
 
-        CameraInformation info = rc.cameraInformation().getSync();
-        if (info == null) return "No disponible";
+    private List<CameraSession> sessions() {
+        synchronized (sessions) {
+            return new ArrayList<>(sessions.values());
+        }
+    }
+
+    private CameraSession session(Identity identity) {
+        return session(identity.deviceId, identity);
+    }
 
-        return info.displayName + ", SN: " + info.serialNumber;
+    /**
+     * Sesión de la cámara, creándola si no existe; la primera toma la vista previa principal
+     */
+    private CameraSession session(String id, @Nullable Identity identity) {
+        synchronized (sessions) {
+            CameraSession session = sessions.get(id);
+            if (session == null) {
+                session = new CameraSession(id, identity);
+                session.getPipeline().setPalette(palette);
+                if (sessions.isEmpty()) makePrimary(session);
+                sessions.put(id, session);
+            }
+            return session;
+        }
     }
 }
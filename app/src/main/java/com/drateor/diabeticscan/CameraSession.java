@@ -0,0 +1,306 @@
+package com.drateor.diabeticscan;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.flir.thermalsdk.live.Camera;
+import com.flir.thermalsdk.live.CameraInformation;
+import com.flir.thermalsdk.live.ConnectParameters;
+import com.flir.thermalsdk.live.Identity;
+import com.flir.thermalsdk.live.connectivity.ConnectionStatusListener;
+import com.flir.thermalsdk.live.remote.Calibration;
+import com.flir.thermalsdk.live.remote.RemoteControl;
+import com.flir.thermalsdk.live.streaming.Stream;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Una cámara conectada con todo lo suyo: conexión, fuente de frames, pipeline, vista previa
+ * y grabación.
+ *
+ * Cada sesión tiene su propio monitor, su hilo de procesamiento ({@link BufferedFrameSource})
+ * y sus buffers, así conectar, calibrar o procesar una cámara no bloquea a las otras.
+ */
+class CameraSession {
+
+    private static final String TAG = "CameraSession";
+
+    private final String id;
+    private final Identity identity;
+    private final FramePipeline pipeline = new FramePipeline();
+
+    private Camera camera;
+    private BufferedFrameSource frameSource;
+    private volatile ThermalPreviewView preview;
+
+    private final Object recordingLock = new Object();
+    private volatile File pendingRecordingFile;
+    private volatile RadiometricRecorder recorder;
+
+    /**
+     * @param identity null para fuentes sin cámara (sintética, grabaciones)
+     */
+    CameraSession(String id, Identity identity) {
+        this.id = id;
+        this.identity = identity;
+        pipeline.getGovernor().setListener((level, reason) -> {
+            LoadGovernor governor = pipeline.getGovernor();
+            Log.i(TAG, id + ": calidad del pipeline " + level + " (" + reason + "); etapas calidad/render/inferencia "
+                    + governor.getStageNanos(LoadGovernor.Stage.QUALITY_GATE) / 1000 + "/"
+                    + governor.getStageNanos(LoadGovernor.Stage.RENDER) / 1000 + "/"
+                    + governor.getStageNanos(LoadGovernor.Stage.INFERENCE) / 1000 + " µs");
+        });
+    }
+
+    String getId() {
+        return id;
+    }
+
+    Identity getIdentity() {
+        return identity;
+    }
+
+    FramePipeline getPipeline() {
+        return pipeline;
+    }
+
+    synchronized void connect(ConnectionStatusListener statusListener) throws IOException {
+        Log.d(TAG, "Conectando a cámara: " + identity);
+        Camera candidate = new Camera();
+        // Si la conexión falla la sesión queda sin cámara, no con una a medio conectar
+        candidate.connect(identity, statusListener, new ConnectParameters());
+        camera = candidate;
+    }
+
+    synchronized boolean isConnected() {
+        return camera != null && camera.isConnected();
+    }
+
+    synchronized void disconnect() {
+        Log.d(TAG, "Desconectando cámara " + id + "...");
+        stopStream();
+        stopRecording();
+        if (camera == null) return;
+
+        camera.disconnect();
+        camera = null;
+    }
+
+    /**
+     * Ejecuta calibración térmica NUC (Non-Uniformity Correction)
+     */
+    synchronized void performNuc() {
+        if (camera == null) return;
+
+        RemoteControl rc = camera.getRemoteControl();
+        if (rc == null) return;
+
+        Calibration calibration = rc.getCalibration();
+        if (calibration != null) {
+            calibration.nuc().executeSync();
+        }
+    }
+
+    /**
+     * Inicia el flujo de imágenes térmicas desde la cámara
+     */
+    synchronized boolean startStream(CameraHandlerPrincipal.StreamDataListener listener) {
+        if (camera == null || !camera.isConnected()) {
+            Log.e(TAG, "No se puede iniciar el stream de " + id + ": cámara nula o desconectada.");
+            return false;
+        }
+
+        Stream stream = camera.getStreams().get(0);
+        if (!stream.isThermal()) {
+            Log.e(TAG, "Stream no es térmico.");
+            return false;
+        }
+
+        startStream(new FlirFrameSource(stream, pipeline::wantsReferencePixels), listener);
+        return true;
+    }
+
+    /**
+     * Inicia el pipeline sobre cualquier fuente de frames (cámara, sintética, ...).
+     * Sin listener la cámara solo alimenta la vista previa, las capturas y la inferencia.
+     */
+    synchronized void startStream(FrameSource source, CameraHandlerPrincipal.StreamDataListener listener) {
+        stopStream();
+        // La grabación ve todos los frames de la fuente, antes de que el buffer descarte los atrasados
+        this.frameSource = new BufferedFrameSource(recordingTap(source), "camera-" + id);
+        pipeline.setSourceColorizes(source instanceof FlirFrameSource);
+
+        pipeline.setSink(new FramePipeline.FrameSink() {
+            private Bitmap thermalScaleBitmap;
+            private String lastInfo;
+
+            @Override
+            public void onFrame(int[] argb, int width, int height, String info) {
+                ThermalPreviewView currentPreview = preview;
+                if (currentPreview != null) {
+                    currentPreview.submitFrame(argb, width, height);
+                    // La información cambia junto con la escala; el resto de los frames no toca la UI
+                    if (info != lastInfo && listener != null) {
+                        lastInfo = info;
+                        listener.scale(thermalScaleBitmap, info);
+                    }
+                    return;
+                }
+                if (listener == null) return;
+                Bitmap thermalBitmap = Bitmap.createBitmap(argb, width, height, Bitmap.Config.ARGB_8888);
+                listener.images(thermalBitmap, thermalScaleBitmap, info);
+            }
+
+            @Override
+            public void onScaleChanged(int[] scaleArgb, int scaleWidth, int scaleHeight, float minCelsius, float maxCelsius) {
+                if (listener == null) return;
+                // La escala se conserva entre frames y solo se regenera cuando cambia
+                thermalScaleBitmap = Bitmap.createBitmap(scaleArgb, scaleWidth, scaleHeight, Bitmap.Config.ARGB_8888);
+                listener.scaleRange(minCelsius, maxCelsius);
+            }
+        });
+        pipeline.start();
+
+        frameSource.start(new FrameSource.Callback() {
+            @Override
+            public void onFrame(ThermalFrame frame) {
+                pipeline.process(frame);
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.e(TAG, "Error durante el streaming de " + id + ": " + message);
+            }
+        });
+    }
+
+    synchronized boolean isStreaming() {
+        return frameSource != null;
+    }
+
+    /**
+     * Detiene la fuente de frames y el pipeline
+     */
+    synchronized void stopStream() {
+        if (frameSource != null) {
+            frameSource.stop();
+            Log.d(TAG, "Stream " + id + " detenido: " + pipeline.getStats().summary() + ", "
+                    + frameSource.getFramesDropped() + " descartados por atraso");
+            frameSource = null;
+        }
+        pipeline.stop();
+    }
+
+    void setPreview(ThermalPreviewView preview) {
+        this.preview = preview;
+    }
+
+    /**
+     * Obtiene información del dispositivo conectado
+     */
+    synchronized String getDeviceInfo() {
+        if (camera == null) return "No disponible";
+
+        RemoteControl rc = camera.getRemoteControl();
+        if (rc == null) return "No disponible";
+
+        CameraInformation info = rc.cameraInformation().getSync();
+        if (info == null) return "No disponible";
+
+        return info.displayName + ", SN: " + info.serialNumber;
+    }
+
+    /**
+     * Empieza a grabar los frames radiométricos crudos del stream en el archivo indicado.
+     * El archivo se abre con el primer frame, cuando se conoce la resolución.
+     */
+    void startRecording(File file) {
+        pendingRecordingFile = file;
+    }
+
+    /**
+     * Detiene la grabación y escribe el índice de frames
+     */
+    void stopRecording() {
+        RadiometricRecorder current;
+        synchronized (recordingLock) {
+            pendingRecordingFile = null;
+            current = recorder;
+            recorder = null;
+        }
+        if (current == null) return;
+
+        try {
+            current.close();
+            Log.d(TAG, "Grabación cerrada: " + current.getFrameCount() + " frames, cola máxima "
+                    + current.getMaxPending() + ", buffers extra " + current.getExtraBuffers()
+                    + ", descartados " + current.getDroppedFrames());
+        } catch (IOException e) {
+            Log.e(TAG, "Error cerrando la grabación", e);
+        }
+    }
+
+    boolean isRecording() {
+        return pendingRecordingFile != null || recorder != null;
+    }
+
+    /**
+     * La misma fuente, pero cada frame pasa por {@link #record} en el hilo de la fuente
+     */
+    private FrameSource recordingTap(FrameSource source) {
+        return new FrameSource() {
+            @Override
+            public void start(Callback callback) {
+                source.start(new Callback() {
+                    @Override
+                    public void onFrame(ThermalFrame frame) {
+                        record(frame);
+                        callback.onFrame(frame);
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        callback.onError(message);
+                    }
+                });
+            }
+
+            @Override
+            public void stop() {
+                source.stop();
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return source.isStreaming();
+            }
+        };
+    }
+
+    /**
+     * Pasa el frame al grabador, si hay una grabación activa. Se ejecuta en el hilo de la cámara,
+     * que solo copia el frame: la escritura va en el hilo del grabador.
+     */
+    private void record(ThermalFrame frame) {
+        if (pendingRecordingFile == null && recorder == null) return;
+
+        if (recorder == null) {
+            synchronized (recordingLock) {
+                File file = pendingRecordingFile;
+                if (file == null) return;
+                try {
+                    recorder = new RadiometricRecorder(file, frame.width, frame.height);
+                    Log.d(TAG, "Grabando en " + file);
+                } catch (IOException e) {
+                    Log.e(TAG, "No se pudo iniciar la grabación", e);
+                    pendingRecordingFile = null;
+                    return;
+                }
+            }
+        }
+
+        RadiometricRecorder current = recorder;
+        if (current != null) current.offer(frame);
+    }
+}
@@ -0,0 +1,43 @@
+package com.drateor.diabeticscan;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Trace;
+
+/**
+ * Aplicación principal. Arranca la inicialización en segundo plano
+ * antes de que se cree la primera actividad.
+ */
+public class DiabeticScanApp extends Application {
+
+    private final ModelRegistry modelRegistry = new ModelRegistry();
+    private final StartupOrchestrator startupOrchestrator = new StartupOrchestrator(modelRegistry);
+
+    @Override
+    public void onCreate() {
+        Trace.beginSection("DiabeticScan:appOnCreate");
+        try {
+            super.onCreate();
+            // Libera los modelos sin uso cuando el sistema pide memoria
+            registerComponentCallbacks(modelRegistry);
+            startupOrchestrator.start(this);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    public StartupOrchestrator getStartupOrchestrator() {
+        return startupOrchestrator;
+    }
+
+    public ModelRegistry getModelRegistry() {
+        return modelRegistry;
+    }
+
+    /**
+     * Obtiene la aplicación desde cualquier contexto
+     */
+    public static DiabeticScanApp from(Context context) {
+        return (DiabeticScanApp) context.getApplicationContext();
+    }
+}
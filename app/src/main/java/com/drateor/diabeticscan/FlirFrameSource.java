@@ -0,0 +1,117 @@
+package com.drateor.diabeticscan;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.flir.thermalsdk.androidsdk.image.BitmapAndroid;
+import com.flir.thermalsdk.image.ImageColorizer;
+import com.flir.thermalsdk.image.Palette;
+import com.flir.thermalsdk.image.PaletteManager;
+import com.flir.thermalsdk.image.Rectangle;
+import com.flir.thermalsdk.image.TemperatureUnit;
+import com.flir.thermalsdk.image.fusion.FusionMode;
+import com.flir.thermalsdk.live.streaming.Stream;
+import com.flir.thermalsdk.live.streaming.ThermalStreamer;
+
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Fuente de frames sobre un stream térmico del SDK FLIR.
+ * Extrae las temperaturas de cada ThermalImage a un {@link ThermalFrame} reutilizado.
+ *
+ * Mientras el pipeline la pida (captura pendiente), agrega al frame la imagen coloreada por el
+ * SDK con la paleta arcoíris, la misma con la que se entrenaron los modelos. La vista previa y
+ * la inferencia en vivo usan la LUT propia, que no tiene que coincidir píxel a píxel.
+ */
+class FlirFrameSource implements FrameSource {
+
+    private static final String TAG = "FlirFrameSource";
+
+    /**
+     * Índice de "rainbow" en PaletteManager.getDefaultPalettes()
+     */
+    private static final int SDK_RAINBOW_INDEX = 10;
+
+    private final Stream stream;
+    private final BooleanSupplier wantsReference;
+    private ThermalStreamer streamer;
+    private ThermalFrame frame;
+    private Palette rainbow;
+    private boolean sizeMismatchLogged = false;
+
+    /**
+     * @param wantsReference si el próximo frame debe llevar la imagen coloreada por el SDK
+     */
+    FlirFrameSource(Stream stream, BooleanSupplier wantsReference) {
+        this.stream = stream;
+        this.wantsReference = wantsReference;
+    }
+
+    @Override
+    public void start(Callback callback) {
+        streamer = new ThermalStreamer(stream);
+
+        stream.start(
+                unused -> {
+                    streamer.update();
+                    streamer.withThermalImage(thermalImage -> {
+                        //TERMAL ONLY
+                        Objects.requireNonNull(thermalImage.getFusion()).setFusionMode(FusionMode.THERMAL_ONLY);
+                        thermalImage.setTemperatureUnit(TemperatureUnit.CELSIUS);
+
+                        int width = thermalImage.getWidth();
+                        int height = thermalImage.getHeight();
+                        if (frame == null || frame.width != width || frame.height != height) {
+                            frame = new ThermalFrame(width, height);
+                        }
+                        double[] values = thermalImage.getValues(new Rectangle(0, 0, width, height));
+                        frame.fillFromCelsius(values, System.nanoTime());
+
+                        frame.hasReference = false;
+                        if (wantsReference.getAsBoolean()) {
+                            if (rainbow == null) rainbow = PaletteManager.getDefaultPalettes().get(SDK_RAINBOW_INDEX);
+                            thermalImage.setPalette(rainbow);
+                            ImageColorizer colorizer = new ImageColorizer(thermalImage);
+                            colorizer.setAutoScale(true);
+                            colorizer.update();
+                            Bitmap bitmap = BitmapAndroid.createBitmap(Objects.requireNonNull(colorizer.getImage())).getBitMap();
+                            copyReference(bitmap);
+                        }
+                    });
+
+                    if (frame != null) callback.onFrame(frame);
+                },
+                error -> callback.onError(String.valueOf(error))
+        );
+    }
+
+    private void copyReference(Bitmap bitmap) {
+        if (bitmap.getWidth() != frame.width || bitmap.getHeight() != frame.height) {
+            // Sin imagen de referencia, el pipeline colorea él mismo con la LUT arcoíris
+            if (!sizeMismatchLogged) {
+                sizeMismatchLogged = true;
+                Log.w(TAG, "Imagen del SDK de " + bitmap.getWidth() + "x" + bitmap.getHeight()
+                        + " para un frame de " + frame.width + "x" + frame.height);
+            }
+            return;
+        }
+        if (frame.referenceArgb == null || frame.referenceArgb.length != frame.raw.length) {
+            frame.referenceArgb = new int[frame.raw.length];
+        }
+        bitmap.getPixels(frame.referenceArgb, 0, frame.width, 0, 0, frame.width, frame.height);
+        frame.hasReference = true;
+    }
+
+    @Override
+    public void stop() {
+        if (stream.isStreaming()) {
+            stream.stop();
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return stream.isStreaming();
+    }
+}
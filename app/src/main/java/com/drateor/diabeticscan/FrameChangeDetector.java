@@ -0,0 +1,76 @@
+package com.drateor.diabeticscan;
+
+/**
+ * Detecta si un frame cambió respecto del último frame procesado, comparando planos reducidos
+ * (los de {@link FrameQualityGate}). Con el paciente quieto la mayoría de los frames son casi
+ * idénticos y se pueden saltar reutilizando la imagen, la escala y la inferencia anteriores.
+ *
+ * La referencia es el último frame procesado, no el anterior, así una deriva lenta termina
+ * superando la tolerancia y se procesa. No reserva memoria por frame.
+ */
+class FrameChangeDetector {
+
+    private final int meanToleranceRaw;
+    private final int maxToleranceRaw;
+    private final int maxConsecutiveSkips;
+
+    private int[] reference;
+    private volatile boolean valid = false;
+    private int consecutiveSkips = 0;
+
+    FrameChangeDetector() {
+        this(0.05f, 0.3f, 30);
+    }
+
+    /**
+     * @param meanToleranceCelsius diferencia media por punto por debajo de la cual no hay cambio
+     * @param maxToleranceCelsius  diferencia máxima en un punto (un cambio localizado también cuenta)
+     * @param maxConsecutiveSkips  frames seguidos que se pueden saltar antes de forzar uno
+     */
+    FrameChangeDetector(float meanToleranceCelsius, float maxToleranceCelsius, int maxConsecutiveSkips) {
+        this.meanToleranceRaw = Math.round(meanToleranceCelsius * 100f);
+        this.maxToleranceRaw = Math.round(maxToleranceCelsius * 100f);
+        this.maxConsecutiveSkips = maxConsecutiveSkips;
+    }
+
+    /**
+     * @return true si el plano difiere del último procesado y hay que procesar el frame;
+     * en ese caso pasa a ser la nueva referencia
+     */
+    boolean hasChanged(int[] plane) {
+        if (reference == null || reference.length != plane.length) {
+            reference = new int[plane.length];
+            valid = false;
+        }
+
+        boolean changed = !valid || consecutiveSkips >= maxConsecutiveSkips;
+        if (!changed) {
+            long total = 0;
+            for (int i = 0; i < plane.length; i++) {
+                int diff = Math.abs(plane[i] - reference[i]);
+                if (diff > maxToleranceRaw) {
+                    changed = true;
+                    break;
+                }
+                total += diff;
+            }
+            if (!changed && total > (long) meanToleranceRaw * plane.length) changed = true;
+        }
+
+        if (changed) {
+            System.arraycopy(plane, 0, reference, 0, plane.length);
+            valid = true;
+            consecutiveSkips = 0;
+        } else {
+            consecutiveSkips++;
+        }
+        return changed;
+    }
+
+    /**
+     * Obliga a procesar el próximo frame (por ejemplo, tras cambiar la paleta)
+     */
+    void invalidate() {
+        valid = false;
+    }
+}
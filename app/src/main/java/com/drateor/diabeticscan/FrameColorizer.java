@@ -0,0 +1,164 @@
+package com.drateor.diabeticscan;
+
+import java.util.EnumMap;
+
+/**
+ * Colorea frames radiométricos crudos a ARGB mediante LUTs precalculadas de la paleta activa.
+ * Es el colorizador del pipeline, tanto para la cámara como para las grabaciones; reemplaza a
+ * ImageColorizer del SDK, que solo trabaja sobre una ThermalImage y se creaba en cada frame.
+ *
+ * El buffer de píxeles se reutiliza entre frames. La paleta se puede cambiar desde cualquier
+ * hilo sin detener el stream: la LUT se publica de forma atómica y se usa desde el frame siguiente.
+ * La barra de escala solo se vuelve a dibujar cuando cambia la paleta o el rango mostrado.
+ */
+class FrameColorizer {
+
+    static final int LUT_SIZE = 4096;
+
+    /**
+     * Rango mostrado redondeado a 0.1 °C: cambios menores no regeneran la escala
+     */
+    private static final int SCALE_RESOLUTION_CENTI_KELVIN = 10;
+
+    private final int scaleWidth;
+    private final int scaleHeight;
+    private final int[] scalePixels;
+    private final EnumMap<ThermalPalette, int[]> lutCache = new EnumMap<>(ThermalPalette.class);
+
+    private volatile Lut lut;
+    private int[] pixels;
+
+    private int minRaw;
+    private int maxRaw;
+
+    private ThermalPalette scalePalette;
+    private int scaleMinKey = Integer.MIN_VALUE;
+    private int scaleMaxKey = Integer.MIN_VALUE;
+
+    FrameColorizer(int scaleWidth, int scaleHeight) {
+        this.scaleWidth = scaleWidth;
+        this.scaleHeight = scaleHeight;
+        this.scalePixels = new int[scaleWidth * scaleHeight];
+        setPalette(ThermalPalette.RAINBOW);
+    }
+
+    /**
+     * Cambia la paleta. La LUT se construye (o se toma de la caché) en el hilo que llama.
+     */
+    void setPalette(ThermalPalette palette) {
+        int[] colors;
+        synchronized (lutCache) {
+            colors = lutCache.get(palette);
+            if (colors == null) {
+                colors = palette.buildLut(LUT_SIZE);
+                lutCache.put(palette, colors);
+            }
+        }
+        lut = new Lut(palette, colors);
+    }
+
+    ThermalPalette getPalette() {
+        return lut.palette;
+    }
+
+    /**
+     * Colorea el frame con el rango indicado en unidades crudas (centésimas de Kelvin),
+     * normalmente el de {@link AutoRangeEstimator}.
+     * Devuelve el buffer interno, válido hasta la siguiente llamada.
+     */
+    int[] colorize(ThermalFrame frame, int rangeMinRaw, int rangeMaxRaw) {
+        if (pixels == null || pixels.length != frame.raw.length) {
+            pixels = new int[frame.raw.length];
+        }
+        colorize(frame, rangeMinRaw, rangeMaxRaw, pixels);
+        return pixels;
+    }
+
+    /**
+     * Igual que {@link #colorize(ThermalFrame, int, int)} pero sobre un buffer propio del llamador,
+     * del tamaño del frame
+     */
+    void colorize(ThermalFrame frame, int rangeMinRaw, int rangeMaxRaw, int[] out) {
+        short[] raw = frame.raw;
+        int[] colors = lut.colors;
+        int last = colors.length - 1;
+        int span = Math.max(1, rangeMaxRaw - rangeMinRaw);
+        // Índice en punto fijo 16.16 para evitar divisiones por píxel
+        long scale = ((long) last << 16) / span;
+
+        for (int i = 0; i < raw.length; i++) {
+            int delta = (raw[i] & 0xFFFF) - rangeMinRaw;
+            if (delta < 0) delta = 0;
+            int index = (int) ((delta * scale) >> 16);
+            out[i] = colors[index > last ? last : index];
+        }
+
+        minRaw = rangeMinRaw;
+        maxRaw = rangeMaxRaw;
+    }
+
+    /**
+     * Vuelve a dibujar la barra de escala si cambiaron la paleta o el rango mostrado.
+     *
+     * @return true si la escala cambió y hay que actualizarla en pantalla
+     */
+    boolean updateScale() {
+        Lut current = lut;
+        int minKey = minRaw / SCALE_RESOLUTION_CENTI_KELVIN;
+        int maxKey = maxRaw / SCALE_RESOLUTION_CENTI_KELVIN;
+        if (current.palette == scalePalette && minKey == scaleMinKey && maxKey == scaleMaxKey) {
+            return false;
+        }
+
+        // Frío a la izquierda
+        int[] colors = current.colors;
+        for (int x = 0; x < scaleWidth; x++) {
+            int color = colors[(int) ((long) x * (colors.length - 1) / Math.max(1, scaleWidth - 1))];
+            for (int y = 0; y < scaleHeight; y++) {
+                scalePixels[y * scaleWidth + x] = color;
+            }
+        }
+
+        scalePalette = current.palette;
+        scaleMinKey = minKey;
+        scaleMaxKey = maxKey;
+        return true;
+    }
+
+    /**
+     * Obliga a emitir la escala en la próxima llamada a {@link #updateScale()}
+     */
+    void invalidateScale() {
+        scalePalette = null;
+    }
+
+    int[] getScalePixels() {
+        return scalePixels;
+    }
+
+    int getScaleWidth() {
+        return scaleWidth;
+    }
+
+    int getScaleHeight() {
+        return scaleHeight;
+    }
+
+    float getMinCelsius() {
+        return ThermalFrame.toCelsius((short) minRaw);
+    }
+
+    float getMaxCelsius() {
+        return ThermalFrame.toCelsius((short) maxRaw);
+    }
+
+    private static class Lut {
+        final ThermalPalette palette;
+        final int[] colors;
+
+        Lut(ThermalPalette palette, int[] colors) {
+            this.palette = palette;
+            this.colors = colors;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.drateor.diabeticscan;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipeline de frames térmicos: calidad y cambio → colorización → visualización → captura →
+ * inferencia en vivo. No depende de Android, así puede ejecutarse en la JVM con una fuente sintética.
+ *
+ * Los frames casi idénticos al último procesado no se colorean, ni se muestran, ni se clasifican:
+ * la vista conserva la imagen, la escala y el resultado de inferencia anteriores.
+ *
+ * La colorización y la entrega a la vista ocurren en el hilo de la fuente. La inferencia corre
+ * en un hilo propio y descarta frames mientras está ocupada, para no frenar el stream.
+ *
+ * {@link LoadGovernor} mide cada etapa y, si la latencia se pasa del objetivo o el equipo se
+ * calienta, saltea colorizaciones, baja la resolución de la vista previa y espacia la inferencia.
+ * Las capturas y la inferencia siempre reciben la imagen a resolución completa y en
+ * {@link #MODEL_PALETTE}, la paleta con la que se entrenaron los modelos; la paleta elegida
+ * por el usuario solo se aplica a la vista previa.
+ */
+class FramePipeline {
+
+    static final int SCALE_WIDTH = 256;
+    static final int SCALE_HEIGHT = 16;
+
+    /**
+     * Paleta de las capturas y de la inferencia: la segmentación descarta el fondo azul y los
+     * modelos se entrenaron con imágenes arcoíris
+     */
+    static final ThermalPalette MODEL_PALETTE = ThermalPalette.RAINBOW;
+
+    /**
+     * Plazo para que llegue un frame apto antes de rechazar la captura
+     */
+    static final long CAPTURE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+    /**
+     * Margen tras el plazo para rechazar la captura aunque la cámara haya dejado de enviar frames
+     */
+    private static final long CAPTURE_STALL_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * Frames que una captura espera la imagen de la fuente antes de colorear ella misma
+     */
+    private static final int REFERENCE_MAX_WAIT_FRAMES = 3;
+
+    interface FrameSink {
+        /**
+         * El arreglo se reutiliza en el siguiente frame: copiarlo si se conserva
+         */
+        void onFrame(int[] argb, int width, int height, String info);
+
+        /**
+         * Solo se llama cuando cambian la paleta o el rango mostrado
+         */
+        void onScaleChanged(int[] scaleArgb, int scaleWidth, int scaleHeight, float minCelsius, float maxCelsius);
+    }
+
+    interface FrameClassifier {
+        String classify(ThermalFrame frame, int[] argb);
+    }
+
+    interface ClassificationListener {
+        void onClassified(String result);
+    }
+
+    interface CaptureCallback {
+        /**
+         * Recibe copias propias del frame capturado
+         */
+        void onCaptured(ThermalFrame frame, int[] argb);
+
+        /**
+         * Ningún frame pasó el filtro de calidad dentro del plazo de captura, o se detuvo el stream
+         */
+        void onRejected(String reason);
+    }
+
+    private final FrameColorizer colorizer = new FrameColorizer(SCALE_WIDTH, SCALE_HEIGHT);
+    private final FrameColorizer modelColorizer = new FrameColorizer(SCALE_WIDTH, SCALE_HEIGHT);
+    private final AutoRangeEstimator rangeEstimator = new AutoRangeEstimator();
+    private final FrameQualityGate qualityGate = new FrameQualityGate();
+    private final FrameChangeDetector changeDetector = new FrameChangeDetector();
+    private final PipelineStats stats = new PipelineStats();
+    private final LoadGovernor governor = new LoadGovernor();
+
+    private volatile FrameSink sink;
+    private volatile FrameClassifier classifier;
+    private volatile ClassificationListener classificationListener;
+    private volatile int inferenceInterval = 1;
+    /**
+     * Se toma con compareAndSet: la captura se entrega o se rechaza una sola vez
+     */
+    private final AtomicReference<CaptureCallback> pendingCapture = new AtomicReference<>();
+    private volatile long captureDeadlineNanos;
+    /**
+     * Aumenta con cada pedido; el hilo del pipeline reinicia sus esperas cuando cambia
+     */
+    private final AtomicInteger captureGeneration = new AtomicInteger();
+    private int handledCaptureGeneration = -1;
+
+    private int[] pixels;
+    /**
+     * true si {@link #pixels} es la imagen completa (no reducida) de un frame reciente
+     */
+    private boolean pixelsFullResolution = false;
+    private int[] fullPixels;
+    private ThermalFrame halfFrame;
+    private boolean skipNextRender = false;
+    private int renderedFrameLength = 0;
+    private volatile boolean sourceColorizes = false;
+    private int referenceWaitFrames = 0;
+    private String info = "";
+    private long frameCounter = 0;
+
+    /**
+     * Hilo de la inferencia en vivo; también vence las capturas si la cámara deja de enviar frames
+     */
+    private volatile ScheduledExecutorService inferenceExecutor;
+    private final AtomicBoolean inferenceBusy = new AtomicBoolean(false);
+    private ThermalFrame inferenceFrame;
+    private int[] inferencePixels;
+
+    void setSink(FrameSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Activa la inferencia en vivo cada {@code interval} frames (null para desactivarla)
+     */
+    void setClassifier(FrameClassifier classifier, int interval, ClassificationListener listener) {
+        this.classifier = classifier;
+        this.inferenceInterval = Math.max(1, interval);
+        this.classificationListener = listener;
+    }
+
+    /**
+     * Cambia la paleta de la vista previa en caliente; se aplica desde el próximo frame.
+     * Las capturas y la inferencia siguen en {@link #MODEL_PALETTE}.
+     */
+    void setPalette(ThermalPalette palette) {
+        colorizer.setPalette(palette);
+        changeDetector.invalidate();
+    }
+
+    ThermalPalette getPalette() {
+        return colorizer.getPalette();
+    }
+
+    /**
+     * Captura el próximo frame que pase el filtro de calidad; los frames movidos,
+     * borrosos o sin el pie en el encuadre se saltan automáticamente. Si en
+     * {@link #CAPTURE_TIMEOUT_NANOS} no llega ninguno apto, o se detiene el stream, la captura
+     * se rechaza.
+     */
+    void requestCapture(CaptureCallback callback) {
+        captureDeadlineNanos = System.nanoTime() + CAPTURE_TIMEOUT_NANOS;
+        captureGeneration.incrementAndGet();
+        pendingCapture.set(callback);
+
+        ScheduledExecutorService executor = inferenceExecutor;
+        if (executor == null) {
+            rejectCapture(callback, "El stream no está activo");
+            return;
+        }
+        try {
+            executor.schedule(() -> rejectCapture(callback, "La cámara dejó de enviar imágenes"),
+                    CAPTURE_TIMEOUT_NANOS + CAPTURE_STALL_GRACE_NANOS, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            // El ejecutor se cerró mientras se pedía la captura
+            rejectCapture(callback, "El stream no está activo");
+        }
+    }
+
+    /**
+     * La fuente adjunta su propia imagen coloreada cuando se le pide ({@link #wantsReferencePixels()});
+     * las capturas la esperan unos frames antes de usar la colorización propia
+     */
+    void setSourceColorizes(boolean sourceColorizes) {
+        this.sourceColorizes = sourceColorizes;
+    }
+
+    /**
+     * Si la fuente debe adjuntar su propia imagen coloreada ({@link ThermalFrame#referenceArgb})
+     * a los próximos frames: solo mientras hay una captura pendiente. La inferencia en vivo usa
+     * la LUT propia en {@link #MODEL_PALETTE}, así la fuente no colorea cada frame.
+     */
+    boolean wantsReferencePixels() {
+        return pendingCapture.get() != null;
+    }
+
+    /**
+     * Descarta la captura pedida, si todavía no se hizo
+     */
+    void cancelCapture() {
+        pendingCapture.set(null);
+    }
+
+    PipelineStats getStats() {
+        return stats;
+    }
+
+    LoadGovernor getGovernor() {
+        return governor;
+    }
+
+    synchronized void start() {
+        colorizer.invalidateScale();
+        rangeEstimator.reset();
+        qualityGate.reset();
+        changeDetector.invalidate();
+        governor.reset();
+        skipNextRender = false;
+        referenceWaitFrames = 0;
+        if (inferenceExecutor == null) {
+            inferenceExecutor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "live-inference"));
+        }
+    }
+
+    /**
+     * Detiene la inferencia en vivo; una captura pendiente se rechaza, ya no llegarán frames
+     */
+    synchronized void stop() {
+        CaptureCallback capture = pendingCapture.get();
+        if (capture != null) rejectCapture(capture, "Se detuvo el stream de la cámara");
+
+        if (inferenceExecutor == null) return;
+        inferenceExecutor.shutdownNow();
+        try {
+            inferenceExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inferenceExecutor = null;
+    }
+
+    /**
+     * Procesa un frame de la fuente. Llamar siempre desde el mismo hilo.
+     */
+    void process(ThermalFrame frame) {
+        long startNanos = System.nanoTime();
+        stats.framesIn.incrementAndGet();
+        LoadGovernor.Level level = governor.getLevel();
+
+        boolean acceptable = qualityGate.assess(frame);
+        if (!acceptable) stats.framesLowQuality.incrementAndGet();
+        long gateNanos = System.nanoTime();
+        governor.recordStage(LoadGovernor.Stage.QUALITY_GATE, gateNanos - startNanos);
+
+        boolean changed = changeDetector.hasChanged(qualityGate.getPlane()) || renderedFrameLength != frame.raw.length;
+        boolean rendered = false;
+        if (!changed) {
+            stats.framesUnchanged.incrementAndGet();
+        } else if (level.alternateColorize && skipNextRender) {
+            // Se muestra el frame siguiente aunque no cambie respecto de este
+            skipNextRender = false;
+            changeDetector.invalidate();
+            stats.framesThrottled.incrementAndGet();
+        } else {
+            skipNextRender = level.alternateColorize;
+            render(frame, level.halfResolution);
+            rendered = true;
+            governor.recordStage(LoadGovernor.Stage.RENDER, System.nanoTime() - gateNanos);
+        }
+        // Un frame sin cambios puede usar la imagen ya coloreada; los demás, solo si se acaba de colorear completa
+        boolean pixelsCurrent = pixelsFullResolution && (rendered || !changed);
+
+        CaptureCallback capture = pendingCapture.get();
+        if (capture != null) {
+            handleCapture(capture, frame, acceptable, pixelsCurrent);
+        }
+
+        // La inferencia en vivo solo corre sobre frames aptos y que cambiaron
+        long interval = (long) inferenceInterval * level.inferenceFactor;
+        if (frameCounter++ % interval == 0 && acceptable && changed) {
+            submitInference(frame, pixelsCurrent);
+        }
+
+        long endNanos = System.nanoTime();
+        governor.onFrame(startNanos - frame.timestampNanos, endNanos - frame.timestampNanos);
+    }
+
+    private void render(ThermalFrame frame, boolean halfResolution) {
+        ThermalFrame shown = halfResolution ? halve(frame) : frame;
+        rangeEstimator.update(shown);
+        pixels = colorizer.colorize(shown, rangeEstimator.getMinRaw(), rangeEstimator.getMaxRaw());
+        pixelsFullResolution = !halfResolution;
+        renderedFrameLength = frame.raw.length;
+
+        FrameSink currentSink = sink;
+        if (colorizer.updateScale()) {
+            float min = colorizer.getMinCelsius();
+            float max = colorizer.getMaxCelsius();
+            info = String.format(Locale.US, "%s  %.1f–%.1f °C", colorizer.getPalette().displayName, min, max);
+            if (currentSink != null) {
+                currentSink.onScaleChanged(colorizer.getScalePixels(), colorizer.getScaleWidth(),
+                        colorizer.getScaleHeight(), min, max);
+            }
+        }
+        if (currentSink != null) {
+            currentSink.onFrame(pixels, shown.width, shown.height, info);
+            stats.framesDisplayed.incrementAndGet();
+        }
+        stats.recordLatency(System.nanoTime() - frame.timestampNanos);
+    }
+
+    /**
+     * Promedio de 2×2 píxeles, en un frame reutilizado
+     */
+    private ThermalFrame halve(ThermalFrame frame) {
+        int width = frame.width / 2;
+        int height = frame.height / 2;
+        if (halfFrame == null || halfFrame.width != width || halfFrame.height != height) {
+            halfFrame = new ThermalFrame(width, height);
+        }
+        short[] raw = frame.raw;
+        short[] out = halfFrame.raw;
+        for (int y = 0; y < height; y++) {
+            int top = 2 * y * frame.width;
+            int bottom = top + frame.width;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int i = 2 * x;
+                int sum = (raw[top + i] & 0xFFFF) + (raw[top + i + 1] & 0xFFFF)
+                        + (raw[bottom + i] & 0xFFFF) + (raw[bottom + i + 1] & 0xFFFF);
+                out[row + x] = (short) (sum >> 2);
+            }
+        }
+        halfFrame.timestampNanos = frame.timestampNanos;
+        return halfFrame;
+    }
+
+    /**
+     * Imagen del frame para capturas e inferencia: la de la fuente si la trae; si no, la de la
+     * vista previa cuando es completa y en {@link #MODEL_PALETTE}, o coloreada aparte
+     */
+    private int[] fullResolutionPixels(ThermalFrame frame, boolean pixelsCurrent) {
+        if (frame.hasReference) return frame.referenceArgb;
+        if (pixelsCurrent && colorizer.getPalette() == MODEL_PALETTE) return pixels;
+        if (fullPixels == null || fullPixels.length != frame.raw.length) {
+            fullPixels = new int[frame.raw.length];
+        }
+        modelColorizer.colorize(frame, rangeEstimator.getMinRaw(), rangeEstimator.getMaxRaw(), fullPixels);
+        return fullPixels;
+    }
+
+    private void handleCapture(CaptureCallback capture, ThermalFrame frame, boolean acceptable, boolean pixelsCurrent) {
+        // Un pedido nuevo (por ejemplo, tras cancelar otro) no hereda las esperas del anterior
+        int generation = captureGeneration.get();
+        if (generation != handledCaptureGeneration) {
+            handledCaptureGeneration = generation;
+            referenceWaitFrames = 0;
+        }
+        // La fuente empieza a adjuntar su imagen desde el frame siguiente al pedido
+        if (sourceColorizes && !frame.hasReference && ++referenceWaitFrames < REFERENCE_MAX_WAIT_FRAMES) return;
+        referenceWaitFrames = 0;
+        if (!acceptable) {
+            if (System.nanoTime() - captureDeadlineNanos < 0) return;
+            rejectCapture(capture, qualityGate.getRejectionReason());
+            return;
+        }
+
+        if (!pendingCapture.compareAndSet(capture, null)) return;
+        ThermalFrame frameCopy = new ThermalFrame(frame.width, frame.height);
+        frameCopy.copyFrom(frame);
+        capture.onCaptured(frameCopy, fullResolutionPixels(frame, pixelsCurrent).clone());
+        stats.captures.incrementAndGet();
+    }
+
+    /**
+     * Rechaza la captura si sigue pendiente; desde el hilo de la fuente, del vencimiento o de stop()
+     */
+    private void rejectCapture(CaptureCallback capture, String reason) {
+        if (!pendingCapture.compareAndSet(capture, null)) return;
+        stats.capturesRejected.incrementAndGet();
+        capture.onRejected(reason);
+    }
+
+    private void submitInference(ThermalFrame frame, boolean pixelsCurrent) {
+        FrameClassifier currentClassifier = classifier;
+        ScheduledExecutorService executor = inferenceExecutor;
+        if (currentClassifier == null || executor == null) return;
+
+        if (!inferenceBusy.compareAndSet(false, true)) {
+            stats.inferencesSkipped.incrementAndGet();
+            return;
+        }
+
+        int[] source = fullResolutionPixels(frame, pixelsCurrent);
+        if (inferenceFrame == null || !inferenceFrame.sameSize(frame)) {
+            inferenceFrame = new ThermalFrame(frame.width, frame.height);
+            inferencePixels = new int[source.length];
+        }
+        inferenceFrame.copyFrom(frame);
+        System.arraycopy(source, 0, inferencePixels, 0, source.length);
+
+        try {
+            executor.execute(() -> {
+                try {
+                    long inferenceStart = System.nanoTime();
+                    String result = currentClassifier.classify(inferenceFrame, inferencePixels);
+                    governor.recordStage(LoadGovernor.Stage.INFERENCE, System.nanoTime() - inferenceStart);
+                    stats.inferencesRun.incrementAndGet();
+                    ClassificationListener listener = classificationListener;
+                    if (listener != null) listener.onClassified(result);
+                } finally {
+                    inferenceBusy.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            // El ejecutor se cerró mientras llegaba el frame
+            inferenceBusy.set(false);
+        }
+    }
+}
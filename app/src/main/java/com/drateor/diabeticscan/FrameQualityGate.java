@@ -0,0 +1,161 @@
+package com.drateor.diabeticscan;
+
+/**
+ * Filtro barato de calidad de frame, previo a cualquier trabajo costoso (captura, segmentación,
+ * inferencia). Trabaja sobre un plano de temperatura reducido a {@value #PLANE_WIDTH}×{@value #PLANE_HEIGHT}
+ * y calcula en pocos microsegundos:
+ * <ul>
+ *   <li>nitidez: varianza del laplaciano (baja si la imagen está movida o desenfocada)</li>
+ *   <li>movimiento: diferencia absoluta media contra el frame anterior</li>
+ *   <li>cobertura: fracción del plano a temperatura de piel (el pie dentro del encuadre)</li>
+ * </ul>
+ * No reserva memoria por frame. Llamar siempre desde el mismo hilo.
+ */
+class FrameQualityGate {
+
+    static final int PLANE_WIDTH = 40;
+    static final int PLANE_HEIGHT = 30;
+
+    private final float minSharpness;
+    private final float maxMotionCelsius;
+    private final float minCoverage;
+    private final int foregroundMinRaw;
+
+    private int[] plane = new int[PLANE_WIDTH * PLANE_HEIGHT];
+    private int[] previousPlane = new int[PLANE_WIDTH * PLANE_HEIGHT];
+    private boolean hasPrevious = false;
+
+    private float sharpness;
+    private float motionCelsius;
+    private float coverage;
+    private String rejectionReason;
+
+    /**
+     * Umbrales por defecto. La nitidez se calibró con un borde pie/fondo de ~9 °C, donde un
+     * desenfoque de ~13 píxeles baja la varianza del laplaciano unas diez veces; conviene
+     * ajustarla con grabaciones radiométricas reales.
+     */
+    FrameQualityGate() {
+        this(12000f, 0.25f, 0.15f, 27f);
+    }
+
+    /**
+     * @param minSharpness       varianza mínima del laplaciano, en (centésimas de K)²
+     * @param maxMotionCelsius   diferencia media máxima contra el frame anterior
+     * @param minCoverage        fracción mínima del encuadre ocupada por el pie (0–1)
+     * @param foregroundCelsius  temperatura a partir de la cual un punto se considera piel
+     */
+    FrameQualityGate(float minSharpness, float maxMotionCelsius, float minCoverage, float foregroundCelsius) {
+        this.minSharpness = minSharpness;
+        this.maxMotionCelsius = maxMotionCelsius;
+        this.minCoverage = minCoverage;
+        this.foregroundMinRaw = ThermalFrame.toRaw(foregroundCelsius) & 0xFFFF;
+    }
+
+    /**
+     * Evalúa el frame y lo compara con el anterior
+     *
+     * @return true si el frame es apto para captura e inferencia
+     */
+    boolean assess(ThermalFrame frame) {
+        downsample(frame);
+
+        // Nitidez: varianza del laplaciano de 4 vecinos sobre el interior del plano
+        long sum = 0;
+        long sumSquares = 0;
+        int count = 0;
+        for (int y = 1; y < PLANE_HEIGHT - 1; y++) {
+            int row = y * PLANE_WIDTH;
+            for (int x = 1; x < PLANE_WIDTH - 1; x++) {
+                int i = row + x;
+                int laplacian = plane[i - 1] + plane[i + 1] + plane[i - PLANE_WIDTH] + plane[i + PLANE_WIDTH] - 4 * plane[i];
+                sum += laplacian;
+                sumSquares += (long) laplacian * laplacian;
+                count++;
+            }
+        }
+        double mean = sum / (double) count;
+        sharpness = (float) (sumSquares / (double) count - mean * mean);
+
+        // Movimiento y cobertura en una sola pasada
+        long motion = 0;
+        int foreground = 0;
+        for (int i = 0; i < plane.length; i++) {
+            if (hasPrevious) motion += Math.abs(plane[i] - previousPlane[i]);
+            if (plane[i] >= foregroundMinRaw) foreground++;
+        }
+        motionCelsius = hasPrevious ? motion / (float) plane.length / 100f : 0f;
+        coverage = foreground / (float) plane.length;
+
+        int[] swap = previousPlane;
+        previousPlane = plane;
+        plane = swap;
+        hasPrevious = true;
+
+        if (coverage < minCoverage) {
+            rejectionReason = "Pie fuera de encuadre";
+        } else if (motionCelsius > maxMotionCelsius) {
+            rejectionReason = "Cámara en movimiento";
+        } else if (sharpness < minSharpness) {
+            rejectionReason = "Imagen borrosa";
+        } else {
+            rejectionReason = null;
+        }
+        return rejectionReason == null;
+    }
+
+    /**
+     * Plano reducido del último frame evaluado, en centésimas de Kelvin
+     */
+    int[] getPlane() {
+        return previousPlane;
+    }
+
+    float getSharpness() {
+        return sharpness;
+    }
+
+    float getMotionCelsius() {
+        return motionCelsius;
+    }
+
+    float getCoverage() {
+        return coverage;
+    }
+
+    /**
+     * Motivo del último rechazo, o null si el último frame pasó el filtro
+     */
+    String getRejectionReason() {
+        return rejectionReason;
+    }
+
+    void reset() {
+        hasPrevious = false;
+    }
+
+    /**
+     * Promedio por bloques; los bordes que no completan un bloque se ignoran
+     */
+    private void downsample(ThermalFrame frame) {
+        int blockWidth = Math.max(1, frame.width / PLANE_WIDTH);
+        int blockHeight = Math.max(1, frame.height / PLANE_HEIGHT);
+        int blockArea = blockWidth * blockHeight;
+        short[] raw = frame.raw;
+
+        for (int py = 0; py < PLANE_HEIGHT; py++) {
+            int y0 = Math.min(py * blockHeight, frame.height - blockHeight);
+            for (int px = 0; px < PLANE_WIDTH; px++) {
+                int x0 = Math.min(px * blockWidth, frame.width - blockWidth);
+                int total = 0;
+                for (int y = y0; y < y0 + blockHeight; y++) {
+                    int row = y * frame.width;
+                    for (int x = x0; x < x0 + blockWidth; x++) {
+                        total += raw[row + x] & 0xFFFF;
+                    }
+                }
+                plane[py * PLANE_WIDTH + px] = total / blockArea;
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.drateor.diabeticscan;
+
+/**
+ * Origen de frames radiométricos para el pipeline: la cámara FLIR, un generador sintético
+ * o cualquier otra fuente que entregue {@link ThermalFrame}.
+ */
+interface FrameSource {
+
+    interface Callback {
+        /**
+         * Se llama en el hilo de la fuente. El frame se reutiliza en la siguiente llamada:
+         * quien necesite conservarlo debe copiarlo.
+         */
+        void onFrame(ThermalFrame frame);
+
+        void onError(String message);
+    }
+
+    void start(Callback callback);
+
+    void stop();
+
+    boolean isStreaming();
+}
@@ -1,33 +1,45 @@
 package com.drateor.diabeticscan;
 
-import android.content.res.AssetFileDescriptor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
+import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
 import org.tensorflow.lite.Interpreter;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 public class InferenceActivity extends AppCompatActivity {
 
+    private static final String TAG = "InferenceActivity";
+
     private ImageView imageView;
     private TextView resultText;
-    private Interpreter tflite;
-    private List<String> classLabels = Arrays.asList("ClaseA", "ClaseB", "ClaseC", "ClaseD");
+    private Button explainButton;
+    private ModelRegistry registry;
+
+    // Entrada y resultado de la última inferencia, para la explicación. Solo se tocan en el hilo principal.
+    private Bitmap segmentedBitmap;
+    private ByteBuffer lastInput;
+    private String lastModelId;
+    private int lastClass = -1;
+    private String lastResult;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -36,56 +48,255 @@ public class InferenceActivity extends AppCompatActivity {
 
         imageView = findViewById(R.id.image_input);
         resultText = findViewById(R.id.text_result);
+        explainButton = findViewById(R.id.button_explain);
+        explainButton.setEnabled(false);
+        explainButton.setOnClickListener(v -> explicarClasificacion());
+        resultText.setOnLongClickListener(v -> {
+            cambiarModelo();
+            return true;
+        });
 
         String uriString = getIntent().getStringExtra("imageUri");
+        if (uriString == null) {
+            resultText.setText("Imagen no encontrada");
+            return;
+        }
 
-        if (uriString != null) {
+        // Decodificar, esperar los modelos e inferir bloquearía la pantalla: todo va en segundo plano
+        resultText.setText("Analizando imagen...");
+        Uri imageUri = Uri.parse(uriString);
+        new Thread(() -> {
             try {
-                Uri imageUri = Uri.parse(uriString);
                 //Bitmap bitmap = BitmapFactory.decodeStream(getContentResolver().openInputStream(imageUri));
                 //imageView.setImageBitmap(bitmap);
                 Bitmap originalBitmap = BitmapFactory.decodeStream(getContentResolver().openInputStream(imageUri));
-                Bitmap segmentedBitmap = segmentImage(originalBitmap);
-                imageView.setImageBitmap(segmentedBitmap);
-                tflite = new Interpreter(loadModelFile());
-                //String result = runInference(bitmap);
-                String result = runInference(segmentedBitmap);
-                resultText.setText(result);
+                Bitmap segmented = segmentImage(originalBitmap);
+                runOnUiThread(() -> imageView.setImageBitmap(segmented));
 
+                ModelRegistry models = DiabeticScanApp.from(this).getStartupOrchestrator().awaitModels();
+                // Incluye los modelos instalados desde el arranque; los que no cambiaron se conservan cargados
+                models.discover(this);
+                //String result = runInference(bitmap);
+                Inference inference = runInference(models, segmented);
+                runOnUiThread(() -> {
+                    registry = models;
+                    segmentedBitmap = segmented;
+                    mostrarResultado(inference);
+                });
             } catch (Exception e) {
-                resultText.setText("Error: " + e.getMessage());
+                Log.e(TAG, "Error en la inferencia", e);
+                runOnUiThread(() -> resultText.setText("Error: " + e.getMessage()));
             }
-        } else {
-            resultText.setText("Imagen no encontrada");
-        }
+        }, "inferencia").start();
     }
 
-    private MappedByteBuffer loadModelFile() throws IOException {
-        AssetFileDescriptor fileDescriptor = getAssets().openFd("modelo.tflite");
-        FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
-        FileChannel fileChannel = inputStream.getChannel();
-        return fileChannel.map(FileChannel.MapMode.READ_ONLY,
-                fileDescriptor.getStartOffset(),
-                fileDescriptor.getDeclaredLength());
+    /**
+     * Resultado de una inferencia, con lo necesario para explicarla
+     */
+    private static class Inference {
+        final String text;
+        final ByteBuffer input;
+        final String modelId;
+        final int classIndex;
+
+        Inference(String text, ByteBuffer input, String modelId, int classIndex) {
+            this.text = text;
+            this.input = input;
+            this.modelId = modelId;
+            this.classIndex = classIndex;
+        }
     }
 
-    private String runInference(Bitmap bitmap) {
+    /**
+     * Corre en segundo plano; no toca el estado de la actividad
+     */
+    private Inference runInference(ModelRegistry models, Bitmap bitmap) throws IOException {
         Bitmap resized = Bitmap.createScaledBitmap(bitmap, 224, 224, true);
         ByteBuffer inputBuffer = convertBitmapToByteBuffer(resized);
 
-        float[][] output = new float[1][classLabels.size()];
-        tflite.run(inputBuffer, output);
+        List<String> classLabels;
+        float[][] output;
+        String modelId;
+        try (ModelRegistry.Lease lease = models.acquireActive()) {
+            classLabels = lease.getLabels();
+            output = new float[1][classLabels.size()];
+            lease.run(inputBuffer, output);
+            modelId = lease.getId();
+        }
+
+        int maxIdx = argMax(output[0]);
+        float maxProb = output[0][maxIdx];
 
+        String result = "Clase: " + classLabels.get(maxIdx) + "\nConfianza: " + String.format(Locale.US, "%.2f%%", maxProb * 100)
+                + "\nModelo: " + modelId;
+
+        // Con otros modelos de las mismas clases, se promedian sobre la misma entrada
+        List<String> ensemble = new ArrayList<>();
+        for (String id : models.getModelIds()) {
+            if (models.getLabels(id).equals(classLabels)) ensemble.add(id);
+        }
+        if (ensemble.size() > 1) {
+            float[] mean = models.runEnsemble(ensemble, inputBuffer);
+            int ensembleIdx = argMax(mean);
+            result += "\nEnsamble (" + ensemble.size() + " modelos): " + classLabels.get(ensembleIdx)
+                    + String.format(Locale.US, " %.2f%%", mean[ensembleIdx] * 100);
+        }
+        return new Inference(result, inputBuffer, modelId, maxIdx);
+    }
+
+    /**
+     * Publica el resultado en el hilo principal, que es el único que lee la última inferencia
+     */
+    private void mostrarResultado(Inference inference) {
+        lastInput = inference.input;
+        lastModelId = inference.modelId;
+        lastClass = inference.classIndex;
+        lastResult = inference.text;
+        resultText.setText(lastResult);
+        explainButton.setEnabled(true);
+    }
+
+    private static int argMax(float[] values) {
         int maxIdx = 0;
-        float maxProb = output[0][0];
-        for (int i = 1; i < output[0].length; i++) {
-            if (output[0][i] > maxProb) {
-                maxProb = output[0][i];
-                maxIdx = i;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[maxIdx]) maxIdx = i;
+        }
+        return maxIdx;
+    }
+
+    /**
+     * Activa el siguiente modelo instalado y repite la inferencia (pulsación larga sobre el resultado)
+     */
+    private void cambiarModelo() {
+        final ModelRegistry models = registry;
+        final Bitmap bitmap = segmentedBitmap;
+        if (models == null || bitmap == null) return;
+        new Thread(() -> {
+            try {
+                // Puede haberse instalado un modelo desde que se abrió la pantalla
+                models.discover(this);
+                List<String> ids = models.getModelIds();
+                if (ids.size() < 2) {
+                    runOnUiThread(() -> Toast.makeText(this, "No hay otros modelos instalados", Toast.LENGTH_SHORT).show());
+                    return;
+                }
+                String siguiente = ids.get((ids.indexOf(models.getActiveId()) + 1) % ids.size());
+                models.setActive(siguiente);
+                Inference inference = runInference(models, bitmap);
+                runOnUiThread(() -> {
+                    imageView.setImageBitmap(bitmap);
+                    mostrarResultado(inference);
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Error cambiando de modelo", e);
+                runOnUiThread(() -> resultText.setText("Error: " + e.getMessage()));
+            }
+        }, "cambio-modelo").start();
+    }
+
+    /**
+     * Mapa de oclusión de la clase predicha, superpuesto a la imagen. Corre en segundo plano
+     * con varios intérpretes en paralelo; cada uno procesa lotes de variantes ocluidas.
+     */
+    private void explicarClasificacion() {
+        if (lastInput == null || lastClass < 0) return;
+        explainButton.setEnabled(false);
+        resultText.setText(lastResult + "\nCalculando explicación...");
+
+        final ByteBuffer input = lastInput;
+        final String modelId = lastModelId;
+        final int target = lastClass;
+        final Bitmap base = segmentedBitmap;
+        final ModelRegistry models = registry;
+        new Thread(() -> {
+            // Se explica el modelo que dio el resultado, aunque entre tanto se haya activado otro
+            try (ModelRegistry.Lease lease = models.acquire(modelId)) {
+                MappedByteBuffer model = lease.getBuffer();
+                OcclusionExplainer explainer = new OcclusionExplainer(
+                        batchSize -> new InterpreterBatchModel(model, batchSize), lease.getLabels().size());
+                OcclusionExplainer.Result result = explainer.explain(input, target);
+                Bitmap overlay = superponerMapa(base, result.heatmap);
+                Log.d(TAG, "Explicación: " + result.variants + " variantes en " + result.elapsedNanos / 1_000_000 + " ms");
+                runOnUiThread(() -> {
+                    imageView.setImageBitmap(overlay);
+                    resultText.setText(lastResult + "\nZonas decisivas resaltadas");
+                    explainButton.setEnabled(true);
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Error calculando la explicación", e);
+                runOnUiThread(() -> {
+                    resultText.setText(lastResult + "\nError en la explicación: " + e.getMessage());
+                    explainButton.setEnabled(true);
+                });
             }
+        }, "explicacion").start();
+    }
+
+    /**
+     * Dibuja el mapa (0–1) con la paleta IRON sobre la imagen, con opacidad proporcional a la importancia
+     */
+    private Bitmap superponerMapa(Bitmap base, float[] heatmap) {
+        int size = OcclusionExplainer.INPUT_SIZE;
+        int[] lut = ThermalPalette.IRON.buildLut(256);
+        int[] pixels = new int[size * size];
+        for (int i = 0; i < pixels.length; i++) {
+            float value = heatmap[i];
+            int alpha = (int) (value * 0.6f * 255);
+            pixels[i] = (alpha << 24) | (lut[(int) (value * 255)] & 0x00FFFFFF);
         }
+        Bitmap heat = Bitmap.createBitmap(pixels, size, size, Bitmap.Config.ARGB_8888);
+
+        Bitmap result = base.copy(Bitmap.Config.ARGB_8888, true);
+        Canvas canvas = new Canvas(result);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        canvas.drawBitmap(heat, null, new Rect(0, 0, result.getWidth(), result.getHeight()), paint);
+        return result;
+    }
 
-        return "Clase: " + classLabels.get(maxIdx) + "\nConfianza: " + String.format(Locale.US, "%.2f%%", maxProb * 100);
+    /**
+     * Intérprete propio de un hilo de la explicación, con la entrada redimensionada al tamaño de lote.
+     * Si el modelo no admite lotes, ejecuta las variantes de a una.
+     */
+    private static class InterpreterBatchModel implements OcclusionExplainer.Model {
+        private static final int IMAGE_BYTES = 4 * 224 * 224 * 3;
+
+        private final Interpreter interpreter;
+        private final boolean batched;
+
+        InterpreterBatchModel(MappedByteBuffer model, int batchSize) {
+            interpreter = new Interpreter(model, new Interpreter.Options().setNumThreads(1));
+            boolean resized;
+            try {
+                interpreter.resizeInput(0, new int[]{batchSize, 224, 224, 3});
+                interpreter.allocateTensors();
+                resized = true;
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                Log.w(TAG, "El modelo no admite lotes, se ejecuta de a una imagen", e);
+                // El redimensionado fallido puede dejar la entrada a medio cambiar: se vuelve al lote de 1
+                interpreter.resizeInput(0, new int[]{1, 224, 224, 3});
+                interpreter.allocateTensors();
+                resized = false;
+            }
+            batched = resized;
+        }
+
+        @Override
+        public void run(ByteBuffer batchInput, float[][] output) {
+            if (batched) {
+                interpreter.run(batchInput, output);
+                return;
+            }
+            for (int k = 0; k < output.length; k++) {
+                ByteBuffer slice = batchInput.duplicate();
+                slice.position(k * IMAGE_BYTES).limit((k + 1) * IMAGE_BYTES);
+                interpreter.run(slice.slice().order(ByteOrder.nativeOrder()), new float[][]{output[k]});
+            }
+        }
+
+        @Override
+        public void close() {
+            interpreter.close();
+        }
     }
 
     private ByteBuffer convertBitmapToByteBuffer(Bitmap bitmap) {
@@ -0,0 +1,87 @@
+package com.drateor.diabeticscan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Inferencia en vivo sobre los frames del pipeline con el modelo activo de {@link ModelRegistry}.
+ *
+ * Prepara la entrada como InferenceActivity (fondo azul a negro, 224×224 RGB en float), pero
+ * sin Bitmaps: muestrea el frame directamente en un buffer propio que se reutiliza. Solo se
+ * llama desde el hilo de inferencia del pipeline.
+ */
+class LiveClassifier implements FramePipeline.FrameClassifier {
+
+    private static final int INPUT_SIZE = 224;
+
+    private final ModelRegistry registry;
+    private final ByteBuffer input = ByteBuffer.allocateDirect(4 * INPUT_SIZE * INPUT_SIZE * 3).order(ByteOrder.nativeOrder());
+    private float[][] output;
+
+    LiveClassifier(ModelRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public String classify(ThermalFrame frame, int[] argb) {
+        fillInput(argb, frame.width, frame.height);
+        try (ModelRegistry.Lease lease = registry.acquireActive()) {
+            List<String> labels = lease.getLabels();
+            if (output == null || output[0].length != labels.size()) output = new float[1][labels.size()];
+            input.rewind();
+            lease.run(input, output);
+
+            int best = 0;
+            for (int i = 1; i < labels.size(); i++) {
+                if (output[0][i] > output[0][best]) best = i;
+            }
+            return String.format(Locale.US, "En vivo: %s %.0f%%", labels.get(best), output[0][best] * 100);
+        } catch (IOException e) {
+            return "En vivo: sin modelo (" + e.getMessage() + ")";
+        }
+    }
+
+    /**
+     * Muestreo al vecino más cercano y segmentación del fondo azul, igual que la captura
+     */
+    private void fillInput(int[] argb, int width, int height) {
+        input.clear();
+        for (int y = 0; y < INPUT_SIZE; y++) {
+            int row = (y * height / INPUT_SIZE) * width;
+            for (int x = 0; x < INPUT_SIZE; x++) {
+                int pixel = argb[row + x * width / INPUT_SIZE];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+                if (isBlue(r, g, b)) {
+                    r = 0;
+                    g = 0;
+                    b = 0;
+                }
+                input.putFloat(r / 255.0f);
+                input.putFloat(g / 255.0f);
+                input.putFloat(b / 255.0f);
+            }
+        }
+    }
+
+    /**
+     * Tono entre 180° y 250° con saturación mayor a 0.3, como Color.RGBToHSV en InferenceActivity
+     */
+    private static boolean isBlue(int r, int g, int b) {
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        if (max == 0 || (max - min) * 10 <= max * 3) return false;
+
+        float delta = max - min;
+        float hue;
+        if (max == r) hue = 60f * (((g - b) / delta) % 6f);
+        else if (max == g) hue = 60f * ((b - r) / delta + 2f);
+        else hue = 60f * ((r - g) / delta + 4f);
+        if (hue < 0) hue += 360f;
+        return hue >= 180f && hue <= 250f;
+    }
+}
@@ -0,0 +1,189 @@
+package com.drateor.diabeticscan;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Regula la calidad del pipeline según la carga, para que la latencia de extremo a extremo
+ * se mantenga dentro de un objetivo en equipos lentos o calientes.
+ *
+ * Cada {@value #WINDOW_FRAMES} frames mira el percentil 90 de la latencia y la espera en cola
+ * (cuánto tardó el frame en empezar a procesarse). Si superan el objetivo baja un nivel; si
+ * sobra margen durante varias ventanas seguidas sube uno. El estado térmico del equipo impone
+ * un nivel mínimo mientras dure. Los niveles son acumulativos.
+ */
+class LoadGovernor {
+
+    /**
+     * Niveles de calidad, de mayor a menor costo
+     */
+    enum Level {
+        FULL(false, false, 1),
+        /**
+         * Colorea y muestra uno de cada dos frames que cambian
+         */
+        ALTERNATE_COLORIZE(true, false, 1),
+        /**
+         * Además, vista previa a la mitad de resolución
+         */
+        HALF_RESOLUTION(true, true, 1),
+        /**
+         * Además, inferencia en vivo cuatro veces menos frecuente
+         */
+        LOW_INFERENCE(true, true, 4);
+
+        final boolean alternateColorize;
+        final boolean halfResolution;
+        final int inferenceFactor;
+
+        Level(boolean alternateColorize, boolean halfResolution, int inferenceFactor) {
+            this.alternateColorize = alternateColorize;
+            this.halfResolution = halfResolution;
+            this.inferenceFactor = inferenceFactor;
+        }
+    }
+
+    /**
+     * Etapas medidas del pipeline
+     */
+    enum Stage {
+        QUALITY_GATE, RENDER, INFERENCE
+    }
+
+    interface LevelListener {
+        void onLevelChanged(Level level, String reason);
+    }
+
+    /**
+     * Mismos valores que PowerManager.THERMAL_STATUS_*, para no depender de Android
+     */
+    static final int THERMAL_NONE = 0;
+    static final int THERMAL_MODERATE = 2;
+    static final int THERMAL_SEVERE = 3;
+    static final int THERMAL_CRITICAL = 4;
+
+    static final int WINDOW_FRAMES = 30;
+
+    /**
+     * Ventanas seguidas con margen antes de subir un nivel, para no oscilar
+     */
+    private static final int CALM_WINDOWS_TO_STEP_UP = 3;
+
+    private static final Level[] LEVELS = Level.values();
+
+    private final long targetNanos;
+    private final long[] window = new long[WINDOW_FRAMES];
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+
+    private int windowCount = 0;
+    private long windowMaxQueueNanos = 0;
+    private int calmWindows = 0;
+    private volatile int loadLevel = 0;
+    private volatile int thermalStatus = THERMAL_NONE;
+    private volatile Level level = Level.FULL;
+    private volatile LevelListener listener;
+
+    /**
+     * Objetivo de 50 ms de extremo a extremo
+     */
+    LoadGovernor() {
+        this(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    LoadGovernor(long targetNanos) {
+        this.targetNanos = targetNanos;
+    }
+
+    void setListener(LevelListener listener) {
+        this.listener = listener;
+    }
+
+    Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Estado térmico del equipo (PowerManager.THERMAL_STATUS_*). Se puede llamar desde cualquier hilo.
+     */
+    void setThermalStatus(int status) {
+        thermalStatus = status;
+        apply("estado térmico " + status);
+    }
+
+    /**
+     * Duración de una etapa; se promedia exponencialmente. Cada etapa debe registrarse desde un solo hilo.
+     */
+    void recordStage(Stage stage, long nanos) {
+        long previous = stageNanos.get(stage.ordinal());
+        stageNanos.set(stage.ordinal(), previous == 0 ? nanos : previous + (nanos - previous) / 8);
+    }
+
+    /**
+     * Promedio reciente de una etapa, en nanosegundos
+     */
+    long getStageNanos(Stage stage) {
+        return stageNanos.get(stage.ordinal());
+    }
+
+    /**
+     * Registra un frame procesado. Llamar desde el hilo del pipeline.
+     *
+     * @param queueNanos      desde que la fuente entregó el frame hasta que empezó a procesarse
+     * @param endToEndNanos   desde que la fuente entregó el frame hasta que terminó de procesarse
+     */
+    void onFrame(long queueNanos, long endToEndNanos) {
+        window[windowCount++] = endToEndNanos;
+        if (queueNanos > windowMaxQueueNanos) windowMaxQueueNanos = queueNanos;
+        if (windowCount < WINDOW_FRAMES) return;
+
+        Arrays.sort(window);
+        long p90 = window[WINDOW_FRAMES * 9 / 10];
+        long maxQueue = windowMaxQueueNanos;
+        windowCount = 0;
+        windowMaxQueueNanos = 0;
+
+        if (p90 > targetNanos || maxQueue > targetNanos / 2) {
+            calmWindows = 0;
+            if (loadLevel < LEVELS.length - 1) {
+                loadLevel++;
+                apply(String.format(Locale.US, "latencia p90 %.1f ms, cola %.1f ms", p90 / 1e6, maxQueue / 1e6));
+            }
+        } else if (p90 < targetNanos / 2 && maxQueue < targetNanos / 4) {
+            if (++calmWindows >= CALM_WINDOWS_TO_STEP_UP && loadLevel > 0) {
+                calmWindows = 0;
+                loadLevel--;
+                apply(String.format(Locale.US, "margen, latencia p90 %.1f ms", p90 / 1e6));
+            }
+        } else {
+            calmWindows = 0;
+        }
+    }
+
+    /**
+     * Vuelve a calidad completa y olvida las mediciones, por ejemplo al reiniciar el stream
+     */
+    void reset() {
+        windowCount = 0;
+        windowMaxQueueNanos = 0;
+        calmWindows = 0;
+        loadLevel = 0;
+        apply("reinicio");
+    }
+
+    private synchronized void apply(String reason) {
+        Level next = LEVELS[Math.max(loadLevel, thermalFloor(thermalStatus))];
+        if (next == level) return;
+        level = next;
+        LevelListener current = listener;
+        if (current != null) current.onLevelChanged(next, reason);
+    }
+
+    private static int thermalFloor(int status) {
+        if (status >= THERMAL_CRITICAL) return Level.LOW_INFERENCE.ordinal();
+        if (status >= THERMAL_SEVERE) return Level.HALF_RESOLUTION.ordinal();
+        if (status >= THERMAL_MODERATE) return Level.ALTERNATE_COLORIZE.ordinal();
+        return Level.FULL.ordinal();
+    }
+}
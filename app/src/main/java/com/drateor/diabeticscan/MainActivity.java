@@ -11,6 +11,7 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Trace;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.view.View;
@@ -29,20 +30,23 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.flir.thermalsdk.ErrorCode;
-import com.flir.thermalsdk.androidsdk.ThermalSdkAndroid;
 import com.flir.thermalsdk.androidsdk.live.connectivity.UsbPermissionHandler;
 import com.flir.thermalsdk.live.CommunicationInterface;
 import com.flir.thermalsdk.live.Identity;
 import com.flir.thermalsdk.live.connectivity.ConnectionStatusListener;
 import com.flir.thermalsdk.live.discovery.DiscoveredCamera;
 import com.flir.thermalsdk.live.discovery.DiscoveryEventListener;
-import com.flir.thermalsdk.log.ThermalLog;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import android.os.Vibrator;
 import android.os.VibrationEffect;
@@ -53,22 +57,36 @@ public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
 
+    /**
+     * Extra de desarrollo para descubrir también los emuladores del SDK, solo en compilaciones de
+     * depuración: {@code adb shell am start -n com.drateor.diabeticscan/.MainActivity --ez usarEmuladores true}
+     */
+    static final String EXTRA_EMULADORES = "usarEmuladores";
+
     private Identity connectedIdentity;
     private CameraHandlerPrincipal cameraHandler;
-    private final LinkedBlockingQueue<FrameDataHolder> framesBuffer = new LinkedBlockingQueue<>(21);
+    private StartupOrchestrator startup;
     private final UsbPermissionHandler usbPermissionHandler = new UsbPermissionHandler();
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     private boolean cameraFound = false;
     private AlertDialog discoveryDialog;
-    private Bitmap ultimoMsxBitmap;
-
-    private TextView informacion;
-    private Button connectButton, disconnectButton, nucButton, captureButton, pickButton;
-
-    private ImageView msxImage, thermalScale, imagenCapturada;
+    private volatile boolean hayImagen = false;
+    private Bitmap ultimaEscalaBitmap;
+    private String ultimaInformacion;
+    // Último resultado de la inferencia en vivo; solo en el hilo principal
+    private String resultadoEnVivo;
+    // Una grabación ocupa el lugar de la cámara principal; solo en el hilo principal
+    private boolean reproduciendo = false;
+
+    private TextView informacion, tempMin, tempMax;
+    private Button connectButton, disconnectButton, nucButton, captureButton, pickButton, replayButton;
+
+    private ThermalPreviewView msxImage;
+    private ImageView thermalScale, imagenCapturada;
     private boolean isSwitchingToInference = false;
     private boolean firstLaunch = true;
+    private boolean startupReported = false;
     private boolean wasCameraConnected = false;
 
     private Identity lastConnectedIdentity = null;
@@ -80,6 +98,7 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        Trace.beginSection("DiabeticScan:mainOnCreate");
         super.onCreate(savedInstanceState);
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_main);
@@ -90,8 +109,10 @@ public class MainActivity extends AppCompatActivity {
             return insets;
         });
 
-        ThermalSdkAndroid.init(getApplicationContext(), ThermalLog.LogLevel.DEBUG);
+        // El SDK térmico y el modelo se inicializan en segundo plano desde DiabeticScanApp
+        startup = DiabeticScanApp.from(this).getStartupOrchestrator();
         cameraHandler = new CameraHandlerPrincipal(this);
+        cameraHandler.setEmulatorsEnabled(getIntent().getBooleanExtra(EXTRA_EMULADORES, false));
 
         pickImageLauncher = registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
@@ -113,6 +134,20 @@ public class MainActivity extends AppCompatActivity {
             showInitialDialog();
             firstLaunch = false;
         }
+
+        startup.whenSdkReady(error -> {
+            updateCameraButtons();
+            if (error != null) mostrarErrorArranque("No se pudo inicializar la cámara térmica", error);
+        });
+        startup.whenModelSettled(error -> {
+            updateCameraButtons();
+            if (error != null) {
+                mostrarErrorArranque("No se pudo cargar el modelo", error);
+            } else {
+                activarInferenciaEnVivo();
+            }
+        });
+        Trace.endSection();
     }
 
 
@@ -121,13 +156,18 @@ public class MainActivity extends AppCompatActivity {
         captureButton = findViewById(R.id.button_capture);
         pickButton = findViewById(R.id.button_pick);
         msxImage = findViewById(R.id.image_thermal);
+        // Los frames van del pipeline a la superficie sin pasar por el hilo principal
+        cameraHandler.setPreview(msxImage);
         thermalScale = findViewById(R.id.image_thermal_scale);
         imagenCapturada = findViewById(R.id.image_thumbnail);
         informacion = findViewById(R.id.text_info);
+        tempMin = findViewById(R.id.text_temp_min);
+        tempMax = findViewById(R.id.text_temp_max);
 
         connectButton = findViewById(R.id.button_connect);
         disconnectButton = findViewById(R.id.button_disconnect);
         nucButton = findViewById(R.id.button_nuc);
+        replayButton = findViewById(R.id.button_replay);
 
         connectButton.setEnabled(false);
         disconnectButton.setEnabled(false);
@@ -136,7 +176,188 @@ public class MainActivity extends AppCompatActivity {
         pickButton.setEnabled(false);
 
         pickButton.setOnClickListener(v -> abrirGaleria());
+        replayButton.setOnClickListener(v -> alternarReproduccion());
         captureButton.setOnClickListener(v -> snapShotImage());
+        msxImage.setOnClickListener(v -> cambiarPaleta());
+        informacion.setOnLongClickListener(v -> {
+            mostrarEstadisticas();
+            return true;
+        });
+        captureButton.setOnLongClickListener(v -> {
+            alternarGrabacion();
+            return true;
+        });
+    }
+
+    /**
+     * Pasa a la siguiente paleta sin reiniciar el stream (toque sobre la imagen térmica)
+     */
+    private void cambiarPaleta() {
+        ThermalPalette siguiente = cameraHandler.getPalette().next();
+        cameraHandler.setPalette(siguiente);
+        Toast.makeText(this, "Paleta: " + siguiente.displayName, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Estadísticas en vivo del stream principal (pulsación larga sobre la información)
+     */
+    private void mostrarEstadisticas() {
+        new AlertDialog.Builder(this)
+                .setTitle("Estadísticas del stream")
+                .setMessage(cameraHandler.getPipelineStats().summary())
+                .setPositiveButton("Aceptar", null)
+                .show();
+    }
+
+    /**
+     * Inicia o detiene la grabación radiométrica del stream (pulsación larga en capturar)
+     */
+    private void alternarGrabacion() {
+        if (cameraHandler.isRecording()) {
+            new Thread(() -> {
+                cameraHandler.stopRecording();
+                runOnUiThread(() -> Toast.makeText(this, "Grabación guardada", Toast.LENGTH_SHORT).show());
+            }).start();
+            return;
+        }
+
+        File dir = getExternalFilesDir("grabaciones");
+        if (dir == null) {
+            Toast.makeText(this, "Almacenamiento no disponible", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        cameraHandler.startRecording(new File(dir, "flir_" + System.currentTimeMillis() + ".dsr"));
+        Toast.makeText(this, "Grabando frames radiométricos", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Elige una grabación para reproducir, o detiene la que está en curso
+     */
+    private void alternarReproduccion() {
+        if (reproduciendo) {
+            detenerReproduccion();
+            return;
+        }
+
+        File dir = getExternalFilesDir("grabaciones");
+        File[] grabaciones = dir == null ? null : dir.listFiles((d, name) -> name.endsWith(".dsr"));
+        if (grabaciones == null || grabaciones.length == 0) {
+            Toast.makeText(this, "No hay grabaciones", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // La más reciente primero
+        Arrays.sort(grabaciones, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        String[] nombres = new String[grabaciones.length];
+        for (int i = 0; i < grabaciones.length; i++) nombres[i] = grabaciones[i].getName();
+
+        new AlertDialog.Builder(this)
+                .setTitle("Reproducir grabación")
+                .setItems(nombres, (d, which) -> reproducirGrabacion(grabaciones[which]))
+                .setNegativeButton("Cancelar", null)
+                .show();
+    }
+
+    /**
+     * Reproduce la grabación por el pipeline de la cámara principal, con la misma vista previa,
+     * paleta, capturas e inferencia en vivo. Las cámaras conectadas se desconectan.
+     */
+    private void reproducirGrabacion(File grabacion) {
+        reproduciendo = true;
+        connectedIdentity = null;
+        wasCameraConnected = false;
+        hayImagen = false;
+        resultadoEnVivo = null;
+        replayButton.setText("Detener");
+        informacion.setText("Reproduciendo " + grabacion.getName());
+        updateCameraButtons();
+
+        new Thread(() -> {
+            cameraHandler.disconnect();
+            try {
+                cameraHandler.startStream(new RadiometricReplayer(grabacion), streamDataListener);
+            } catch (IOException e) {
+                Log.e(TAG, "No se pudo reproducir " + grabacion, e);
+                runOnUiThread(() -> {
+                    reproduciendo = false;
+                    replayButton.setText("Grabaciones");
+                    informacion.setText("No se pudo reproducir: " + e.getMessage());
+                    updateCameraButtons();
+                });
+            }
+        }, "reproduccion").start();
+    }
+
+    private void detenerReproduccion() {
+        hayImagen = false;
+        resultadoEnVivo = null;
+        // Hasta que se libere la sesión de la grabación no se puede conectar una cámara
+        replayButton.setEnabled(false);
+        new Thread(() -> {
+            cameraHandler.stopLocalStream();
+            runOnUiThread(() -> {
+                reproduciendo = false;
+                replayButton.setText("Grabaciones");
+                replayButton.setEnabled(true);
+                informacion.setText("Reproducción detenida");
+                updateCameraButtons();
+            });
+        }, "reproduccion").start();
+    }
+
+    /**
+     * Con el modelo cargado, la cámara principal clasifica en vivo; el resultado se muestra junto
+     * a la información del stream
+     */
+    private void activarInferenciaEnVivo() {
+        ModelRegistry registry;
+        try {
+            // El modelo ya terminó de cargarse: no bloquea
+            registry = startup.awaitModels();
+        } catch (IOException e) {
+            Log.w(TAG, "Sin inferencia en vivo: " + e.getMessage());
+            return;
+        }
+        cameraHandler.setLiveClassifier(new LiveClassifier(registry), result -> runOnUiThread(() -> {
+            resultadoEnVivo = result;
+            // Durante una captura el texto muestra su progreso
+            if (captureButton.isEnabled() && ultimaInformacion != null) {
+                informacion.setText(ultimaInformacion + "\n" + result);
+            }
+        }));
+    }
+
+    /**
+     * Un fallo del arranque deja los botones correspondientes deshabilitados; se explica por qué
+     */
+    private void mostrarErrorArranque(String titulo, Throwable error) {
+        String causa = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        informacion.setText(titulo + ": " + causa);
+        new AlertDialog.Builder(this)
+                .setTitle(titulo)
+                .setMessage(causa)
+                .setPositiveButton("Aceptar", null)
+                .show();
+    }
+
+    /**
+     * Habilita los botones de cámara solo cuando el SDK (y el modelo, para inferencia) están listos
+     */
+    private void updateCameraButtons() {
+        boolean sdkReady = startup.isSdkReady();
+        boolean modelSettled = startup.isModelSettled();
+
+        connectButton.setEnabled(sdkReady && cameraFound && !reproduciendo);
+        disconnectButton.setEnabled(sdkReady && cameraFound);
+        nucButton.setEnabled(sdkReady && cameraFound && !reproduciendo);
+        // Una grabación se captura igual que la cámara, sin necesitar el SDK
+        captureButton.setEnabled(modelSettled && (sdkReady && cameraFound || reproduciendo));
+        pickButton.setEnabled(modelSettled && cameraFound);
+
+        if (sdkReady && modelSettled && !startupReported) {
+            startupReported = true;
+            StartupOrchestrator.traceTimeToInteractive(TAG);
+            reportFullyDrawn();
+        }
     }
 
     @Override
@@ -245,16 +466,28 @@ public class MainActivity extends AppCompatActivity {
 
 
     private void showInitialDialog() {
-        new AlertDialog.Builder(this)
+        AlertDialog dialog = new AlertDialog.Builder(this)
                 .setTitle("Conectar cámara")
                 .setMessage("Conecte su cámara FLIR y presione Aceptar.")
                 .setCancelable(false)
-                .setPositiveButton("Aceptar", (dialog, which) -> {
-                    dialog.dismiss();
+                .setPositiveButton("Aceptar", (d, which) -> {
+                    d.dismiss();
                     startDiscovery();
                     showDiscoveryDialog();
                 })
                 .show();
+
+        // La búsqueda necesita el SDK inicializado; si falló, el error se muestra aparte
+        if (!startup.isSdkReady()) {
+            dialog.getButton(AlertDialog.BUTTON_POSITIVE).setEnabled(false);
+            startup.whenSdkReady(error -> {
+                if (error == null) {
+                    dialog.getButton(AlertDialog.BUTTON_POSITIVE).setEnabled(true);
+                } else {
+                    dialog.dismiss();
+                }
+            });
+        }
     }
 
     private void showDiscoveryDialog() {
@@ -346,6 +579,10 @@ public class MainActivity extends AppCompatActivity {
     private void connect(Identity identity) {
         stopDiscovery();
 
+        if (reproduciendo) {
+            Toast.makeText(this, "Detenga la reproducción para conectar la cámara", Toast.LENGTH_SHORT).show();
+            return;
+        }
         if (connectedIdentity != null || identity == null) {
             Toast.makeText(this, "No se puede conectar: cámara no disponible", Toast.LENGTH_SHORT).show();
             return;
@@ -404,6 +641,7 @@ public class MainActivity extends AppCompatActivity {
 
 
                 cameraHandler.startStream(streamDataListener);
+                runOnUiThread(() -> conectarCamarasAdicionales(identity));
 
             } catch (IOException e) {
                 runOnUiThread(() -> informacion.setText("Error: " + e.getMessage()));
@@ -412,8 +650,68 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
+    /**
+     * Conecta las demás cámaras encontradas (por ejemplo, una por pie). Transmiten sin vista
+     * previa propia y participan de las capturas pareadas.
+     */
+    private void conectarCamarasAdicionales(Identity principal) {
+        for (Identity identity : cameraHandler.getCameraIdentities()) {
+            if (identity.deviceId.equals(principal.deviceId)) continue;
+            // Un emulador solo acompaña a otra cámara si se pidió explícitamente
+            if (CameraHandlerPrincipal.isEmulator(identity) && !cameraHandler.areEmulatorsEnabled()) continue;
+            if (UsbPermissionHandler.isFlirOne(identity)) {
+                usbPermissionHandler.requestFlirOnePermisson(identity, this, secondaryPermissionListener);
+            } else {
+                conectarCamaraAdicional(identity);
+            }
+        }
+    }
+
+    private void conectarCamaraAdicional(Identity identity) {
+        new Thread(() -> {
+            try {
+                cameraHandler.connect(identity, errorCode -> {
+                    Log.w(TAG, "Cámara adicional desconectada (" + identity.deviceId + "): " + errorCode);
+                    new Thread(() -> cameraHandler.disconnect(identity)).start();
+                });
+                cameraHandler.startStream(identity, null);
+                int camaras = cameraHandler.getStreamingCameraCount();
+                runOnUiThread(() -> Snackbar.make(findViewById(R.id.layout_main),
+                        camaras + " cámaras transmitiendo", Snackbar.LENGTH_SHORT).show());
+            } catch (IOException e) {
+                Log.e(TAG, "No se pudo conectar la cámara adicional " + identity, e);
+            }
+        }, "camera-connect-" + identity.deviceId).start();
+    }
+
+    private final UsbPermissionHandler.UsbPermissionListener secondaryPermissionListener = new UsbPermissionHandler.UsbPermissionListener() {
+        @Override
+        public void permissionGranted(@NonNull Identity identity) {
+            conectarCamaraAdicional(identity);
+        }
+
+        @Override
+        public void permissionDenied(@NonNull Identity identity) {
+            Toast.makeText(MainActivity.this, "Permiso denegado para la segunda cámara", Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        public void error(ErrorType errorType, @NonNull Identity identity) {
+            Toast.makeText(MainActivity.this, "Error de permisos USB", Toast.LENGTH_SHORT).show();
+        }
+    };
+
     private void disconnect() {
         connectedIdentity = null;
+        // Sin cámara no hay imagen que capturar hasta que llegue el próximo frame
+        hayImagen = false;
+        resultadoEnVivo = null;
+        // Desconectar también detiene una reproducción en curso
+        if (reproduciendo) {
+            reproduciendo = false;
+            replayButton.setText("Grabaciones");
+            updateCameraButtons();
+        }
         new Thread(() -> {
             cameraHandler.disconnect();
             runOnUiThread(() -> informacion.setText("Desconectado"));
@@ -439,11 +737,7 @@ public class MainActivity extends AppCompatActivity {
             cameraFound = true;
             runOnUiThread(() -> {
                 if (discoveryDialog.isShowing()) discoveryDialog.dismiss();
-                connectButton.setEnabled(true);
-                disconnectButton.setEnabled(true);
-                nucButton.setEnabled(true);
-                pickButton.setEnabled(true);
-                captureButton.setEnabled(true);
+                updateCameraButtons();
                 informacion.setText("Cámara detectada");
             });
         }
@@ -456,53 +750,188 @@ public class MainActivity extends AppCompatActivity {
         }
     };
 
-    private final CameraHandlerPrincipal.StreamDataListener streamDataListener = (msxBitmap, dcBitmap, info) -> {
-        try {
-            framesBuffer.put(new FrameDataHolder(msxBitmap, dcBitmap, info));
-        } catch (InterruptedException e) {
-            Log.e(TAG, "Buffer lleno", e);
-        }
-
-        runOnUiThread(() -> {
-            FrameDataHolder poll = framesBuffer.poll();
-            if (poll != null) {
-                ultimoMsxBitmap = poll.msxBitmap;
-                msxImage.setImageBitmap(poll.msxBitmap);
-                thermalScale.setImageBitmap(poll.dcBitmap);
-                informacion.setText(poll.informacion);
-            }
-        });
+    private final CameraHandlerPrincipal.StreamDataListener streamDataListener = new CameraHandlerPrincipal.StreamDataListener() {
+        @Override
+        public void images(Bitmap msxBitmap, Bitmap dcBitmap, String info) {
+            // Con vista previa directa los frames no pasan por aquí; solo se actualizan escala e información
+            scale(dcBitmap, info);
+        }
+
+        @Override
+        public void scale(Bitmap dcBitmap, String info) {
+            hayImagen = true;
+            runOnUiThread(() -> {
+                // La escala es el mismo Bitmap mientras no cambie
+                if (dcBitmap != ultimaEscalaBitmap) {
+                    ultimaEscalaBitmap = dcBitmap;
+                    thermalScale.setImageBitmap(dcBitmap);
+                }
+                if (!info.equals(ultimaInformacion)) {
+                    ultimaInformacion = info;
+                    informacion.setText(resultadoEnVivo == null ? info : info + "\n" + resultadoEnVivo);
+                }
+            });
+        }
+
+        @Override
+        public void scaleRange(float minCelsius, float maxCelsius) {
+            runOnUiThread(() -> {
+                tempMin.setText(String.format(Locale.US, "%.1f°C", minCelsius));
+                tempMax.setText(String.format(Locale.US, "%.1f°C", maxCelsius));
+            });
+        }
     };
 
     private void snapShotImage() {
-        if (ultimoMsxBitmap == null) {
+        if (!hayImagen) {
             Toast.makeText(this, "No hay imagen para guardar", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        try {
-            // Guardar en archivo temporal
-            File file = new File(getCacheDir(), "captured.jpg");
-            FileOutputStream out = new FileOutputStream(file);
-            ultimoMsxBitmap.compress(Bitmap.CompressFormat.JPEG, 100, out);
-            out.flush();
-            out.close();
-
-            isSwitchingToInference = true;
-            //guardarImagenEnGaleria();
-            guardarBitmapEnGaleria(ultimoMsxBitmap);
-
-            // Pasar la URI al InferenceActivity
-            //Intent intent = new Intent(this, InferenceActivity.class);
-            //intent.putExtra("imageUri", Uri.fromFile(file).toString());
-            //startActivity(intent);
+        // Espera un frame nítido, quieto y con el pie en el encuadre antes de guardar e inferir
+        captureButton.setEnabled(false);
+        informacion.setText("Capturando… mantenga la cámara quieta");
+        if (cameraHandler.getStreamingCameraCount() > 1) {
+            capturarPareado();
+            return;
+        }
+        cameraHandler.requestCapture(new FramePipeline.CaptureCallback() {
+            @Override
+            public void onCaptured(ThermalFrame frame, int[] argb) {
+                Bitmap bitmap = Bitmap.createBitmap(argb, frame.width, frame.height, Bitmap.Config.ARGB_8888);
+                runOnUiThread(() -> {
+                    captureButton.setEnabled(true);
+                    guardarCaptura(bitmap);
+                });
+            }
+
+            @Override
+            public void onRejected(String reason) {
+                runOnUiThread(() -> {
+                    captureButton.setEnabled(true);
+                    informacion.setText("Captura descartada: " + reason);
+                    Toast.makeText(MainActivity.this, reason + ". Intente de nuevo.", Toast.LENGTH_SHORT).show();
+                });
+            }
+        });
+    }
+
+    /**
+     * Una captura por cámara, alineadas en el tiempo; se guardan todas y se infiere sobre la principal
+     */
+    private void capturarPareado() {
+        cameraHandler.requestPairedCapture(new PairedCapture.Callback() {
+            @Override
+            public void onCaptured(List<PairedCapture.Shot> shots, long skewNanos) {
+                String parId = UUID.randomUUID().toString().substring(0, 8);
+                long desfaseMs = TimeUnit.NANOSECONDS.toMillis(skewNanos);
+                // Llega en el hilo de una cámara: las conversiones y las compresiones van aparte
+                new Thread(() -> {
+                    List<Bitmap> bitmaps = new ArrayList<>();
+                    List<String> etiquetas = new ArrayList<>();
+                    for (int i = 0; i < shots.size(); i++) {
+                        PairedCapture.Shot shot = shots.get(i);
+                        bitmaps.add(Bitmap.createBitmap(shot.argb, shot.frame.width, shot.frame.height, Bitmap.Config.ARGB_8888));
+                        etiquetas.add(etiquetaPareada(parId, shot, i, desfaseMs));
+                    }
+                    // La principal se comprime y guarda aquí; al hilo de UI solo va abrir la inferencia
+                    Uri principal = null;
+                    try {
+                        principal = guardarArchivos(bitmaps.get(0), etiquetas.get(0));
+                    } catch (IOException e) {
+                        Log.e(TAG, "No se pudo guardar la captura de " + shots.get(0).cameraId, e);
+                    }
+                    Uri uri = principal;
+                    runOnUiThread(() -> {
+                        captureButton.setEnabled(true);
+                        informacion.setText(String.format(Locale.US, "%d capturas con %d ms de diferencia",
+                                bitmaps.size(), desfaseMs));
+                        if (uri != null) {
+                            abrirInferencia(uri);
+                        } else {
+                            Toast.makeText(MainActivity.this, "Error al guardar imagen", Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                    for (int i = 1; i < bitmaps.size(); i++) {
+                        try {
+                            insertarEnGaleria(bitmaps.get(i));
+                        } catch (IOException e) {
+                            Log.e(TAG, "No se pudo guardar la captura de " + shots.get(i).cameraId, e);
+                            runOnUiThread(() -> Toast.makeText(MainActivity.this, "Error al guardar imagen", Toast.LENGTH_SHORT).show());
+                        }
+                        ScanSyncJobService.enqueue(MainActivity.this, bitmaps.get(i), etiquetas.get(i));
+                    }
+                }, "captura-pareada").start();
+            }
+
+            @Override
+            public void onRejected(String reason) {
+                runOnUiThread(() -> {
+                    captureButton.setEnabled(true);
+                    informacion.setText("Captura descartada: " + reason);
+                    Toast.makeText(MainActivity.this, reason + ". Intente de nuevo.", Toast.LENGTH_SHORT).show();
+                });
+            }
+        });
+    }
+
+    /**
+     * Etiqueta de cola de una captura pareada: par, cámara, pie y desfase, para que el servidor
+     * reúna las capturas del mismo par. Por convención la cámara principal enfoca el pie
+     * izquierdo y la segunda el derecho.
+     */
+    private static String etiquetaPareada(String parId, PairedCapture.Shot shot, int indice, long desfaseMs) {
+        String pie = indice == 0 ? "izquierdo" : indice == 1 ? "derecho" : "extra" + indice;
+        return "par-" + parId + "_cam-" + shot.cameraId + "_pie-" + pie + "_desfase-" + desfaseMs + "ms";
+    }
+
+    private void guardarCaptura(Bitmap captura) {
+        guardarCaptura(captura, null);
+    }
 
+    /**
+     * @param etiqueta etiqueta de la copia para el servidor, o null
+     */
+    private void guardarCaptura(Bitmap captura, String etiqueta) {
+        try {
+            abrirInferencia(guardarArchivos(captura, etiqueta));
         } catch (IOException e) {
-            Toast.makeText(this, "Error al guardar imagen temporal", Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, "Error al guardar imagen", Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void guardarBitmapEnGaleria(Bitmap bitmap) {
+    /**
+     * Guarda la captura en el archivo temporal y en la galería y encola la copia para el servidor.
+     * Comprime dos JPEG: puede llamarse fuera del hilo de UI.
+     *
+     * @return URI de la imagen en la galería
+     */
+    private Uri guardarArchivos(Bitmap captura, String etiqueta) throws IOException {
+        // Guardar en archivo temporal
+        File file = new File(getCacheDir(), "captured.jpg");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            captura.compress(Bitmap.CompressFormat.JPEG, 100, out);
+        }
+
+        // Copia para el servidor de la clínica; se comprime y envía en segundo plano
+        ScanSyncJobService.enqueue(this, captura, etiqueta);
+
+        return insertarEnGaleria(captura);
+    }
+
+    /**
+     * Pasa la URI de la captura al InferenceActivity
+     */
+    private void abrirInferencia(Uri uri) {
+        Toast.makeText(this, "Imagen guardada", Toast.LENGTH_SHORT).show();
+        isSwitchingToInference = true;
+
+        Intent intent = new Intent(this, InferenceActivity.class);
+        intent.putExtra("imageUri", uri.toString()); // ✅ pasas el URI, no el bitmap
+        startActivity(intent);
+    }
+
+    private Uri insertarEnGaleria(Bitmap bitmap) throws IOException {
         ContentValues values = new ContentValues();
         values.put(MediaStore.Images.Media.DISPLAY_NAME, "flir_msx_" + System.currentTimeMillis() + ".jpg");
         values.put(MediaStore.Images.Media.MIME_TYPE, "image/jpeg");
@@ -510,20 +939,13 @@ public class MainActivity extends AppCompatActivity {
 
         ContentResolver resolver = getContentResolver();
         Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) throw new IOException("No se pudo crear la imagen en la galería");
 
         try (OutputStream outputStream = resolver.openOutputStream(uri)) {
             bitmap.compress(Bitmap.CompressFormat.JPEG, 100, outputStream);
             if (outputStream != null) outputStream.flush();
-            Toast.makeText(this, "Imagen guardada", Toast.LENGTH_SHORT).show();
-
-            Intent intent = new Intent(this, InferenceActivity.class);
-            intent.putExtra("imageUri", uri.toString()); // ✅ pasas el URI, no el bitmap
-            startActivity(intent);
-
-
-        } catch (IOException e) {
-            Toast.makeText(this, "Error al guardar imagen", Toast.LENGTH_SHORT).show();
         }
+        return uri;
     }
 
 }
@@ -0,0 +1,431 @@
+package com.drateor.diabeticscan;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Configuration;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registro de modelos TFLite disponibles.
+ *
+ * Descubre los modelos ({@code *.tflite}) en los assets y en {@code filesDir/modelos}, con sus
+ * etiquetas en un archivo {@code <modelo>.labels.txt} (una por línea). Un modelo en el
+ * almacenamiento reemplaza al asset del mismo nombre, así se puede actualizar sin una APK nueva.
+ *
+ * Cada modelo se mapea en memoria la primera vez que se usa y se libera cuando el sistema pide
+ * memoria y nadie lo está usando. El modelo activo se cambia de forma atómica: quien ya tiene
+ * un {@link Lease} termina su inferencia con el modelo anterior, que no se cierra mientras esté reservado.
+ */
+public class ModelRegistry implements ComponentCallbacks2 {
+
+    private static final String TAG = "ModelRegistry";
+    static final String MODEL_EXTENSION = ".tflite";
+    static final String LABELS_EXTENSION = ".labels.txt";
+    static final String MODELS_DIR = "modelos";
+
+    /**
+     * Etiquetas de los modelos que no traen archivo de etiquetas
+     */
+    static final List<String> DEFAULT_LABELS = Collections.unmodifiableList(
+            Arrays.asList("ClaseA", "ClaseB", "ClaseC", "ClaseD"));
+
+    /**
+     * Tiempo sin uso tras el cual un modelo no activo se libera ante una presión de memoria moderada
+     */
+    private static final long IDLE_EVICT_MS = 60_000;
+
+    private final Map<String, ModelEntry> models = new LinkedHashMap<>();
+    private final AtomicReference<ModelEntry> active = new AtomicReference<>();
+    private Context context;
+
+    /**
+     * Busca los modelos disponibles. Lee directorios y archivos de etiquetas: llamar en segundo plano.
+     * Se puede repetir para ver modelos instalados después; los que no cambiaron siguen cargados.
+     */
+    public synchronized void discover(Context context) throws IOException {
+        this.context = context.getApplicationContext();
+        Map<String, ModelEntry> found = new LinkedHashMap<>();
+
+        for (String dir : new String[]{"", MODELS_DIR}) {
+            String[] names = this.context.getAssets().list(dir);
+            if (names == null) continue;
+            for (String name : names) {
+                if (!name.endsWith(MODEL_EXTENSION)) continue;
+                String path = dir.isEmpty() ? name : dir + "/" + name;
+                String id = idOf(name);
+                found.put(id, new ModelEntry(id, path, null, readAssetLabels(path)));
+            }
+        }
+
+        File[] files = new File(this.context.getFilesDir(), MODELS_DIR).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(MODEL_EXTENSION)) continue;
+                String id = idOf(file.getName());
+                found.put(id, new ModelEntry(id, null, file, readFileLabels(file)));
+            }
+        }
+
+        List<ModelEntry> retired = new ArrayList<>();
+        synchronized (models) {
+            // Los modelos ya cargados que siguen igual se conservan
+            for (Map.Entry<String, ModelEntry> entry : found.entrySet()) {
+                ModelEntry previous = models.get(entry.getKey());
+                if (previous != null && previous.sameSource(entry.getValue())) {
+                    entry.setValue(previous);
+                }
+            }
+            for (ModelEntry previous : models.values()) {
+                if (found.get(previous.id) != previous) retired.add(previous);
+            }
+            models.clear();
+            models.putAll(found);
+        }
+        for (ModelEntry previous : retired) {
+            // Un modelo activo reemplazado pasa a su nueva versión; se mapea en el próximo uso
+            ModelEntry replacement = found.get(previous.id);
+            if (replacement != null) active.compareAndSet(previous, replacement);
+            previous.retire();
+        }
+        Log.d(TAG, "Modelos encontrados: " + found.keySet());
+    }
+
+    /**
+     * Identificadores de los modelos descubiertos, en orden de descubrimiento
+     */
+    public List<String> getModelIds() {
+        synchronized (models) {
+            return new ArrayList<>(models.keySet());
+        }
+    }
+
+    /**
+     * Etiquetas de un modelo, sin necesidad de cargarlo
+     */
+    public List<String> getLabels(String id) throws IOException {
+        return entry(id).labels;
+    }
+
+    public String getActiveId() {
+        ModelEntry current = active.get();
+        return current == null ? null : current.id;
+    }
+
+    /**
+     * Cambia el modelo activo. Lo mapea y carga antes del cambio (llamar en segundo plano),
+     * así las inferencias nuevas nunca esperan la carga y las que están en curso no fallan.
+     */
+    public void setActive(String id) throws IOException {
+        ModelEntry entry = entry(id);
+        try (Lease lease = acquire(entry)) {
+            // Tocar las páginas del modelo aquí evita fallos de página en la primera inferencia
+            lease.getBuffer().load();
+        }
+        ModelEntry previous = active.getAndSet(entry);
+        if (previous != null && previous != entry) {
+            previous.touch();
+            Log.d(TAG, "Modelo activo: " + previous.id + " → " + id);
+        }
+    }
+
+    /**
+     * Reserva el modelo activo para una inferencia. Cerrar el Lease al terminar.
+     */
+    public Lease acquireActive() throws IOException {
+        ModelEntry entry = active.get();
+        if (entry == null) throw new IOException("No hay modelo activo");
+        return acquire(entry);
+    }
+
+    /**
+     * Reserva un modelo concreto, mapeándolo si hace falta
+     */
+    public Lease acquire(String id) throws IOException {
+        return acquire(entry(id));
+    }
+
+    /**
+     * Ejecuta varios modelos sobre la misma entrada ya preprocesada y promedia sus probabilidades.
+     * Todos deben tener las mismas etiquetas.
+     */
+    public float[] runEnsemble(List<String> ids, ByteBuffer input) throws IOException {
+        if (ids.isEmpty()) throw new IllegalArgumentException("Ensamble vacío");
+        List<Lease> leases = new ArrayList<>(ids.size());
+        try {
+            for (String id : ids) {
+                Lease lease = acquire(id);
+                leases.add(lease);
+                if (!lease.getLabels().equals(leases.get(0).getLabels())) {
+                    throw new IllegalArgumentException("Etiquetas distintas en " + id + " y " + ids.get(0));
+                }
+            }
+
+            int classes = leases.get(0).getLabels().size();
+            float[] mean = new float[classes];
+            float[][] output = new float[1][classes];
+            for (Lease lease : leases) {
+                // Cada modelo lee la misma entrada desde el principio, sin copiarla
+                ByteBuffer view = input.duplicate();
+                view.rewind();
+                lease.run(view, output);
+                for (int i = 0; i < classes; i++) mean[i] += output[0][i] / leases.size();
+            }
+            return mean;
+        } finally {
+            for (Lease lease : leases) lease.close();
+        }
+    }
+
+    /**
+     * Libera los modelos que nadie usa: todos ante presión crítica, o solo los inactivos
+     * que llevan un rato sin usarse. Se vuelven a mapear solos en el próximo uso.
+     */
+    void evictIdle(boolean critical) {
+        List<ModelEntry> entries;
+        synchronized (models) {
+            entries = new ArrayList<>(models.values());
+        }
+        long now = SystemClock.uptimeMillis();
+        ModelEntry current = active.get();
+        for (ModelEntry entry : entries) {
+            boolean idle = entry != current && now - entry.lastUsedMs > IDLE_EVICT_MS;
+            if ((critical || idle) && entry.unloadIfUnused()) {
+                Log.d(TAG, "Modelo liberado por memoria: " + entry.id);
+            }
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE
+                || (level >= TRIM_MEMORY_RUNNING_CRITICAL && level < TRIM_MEMORY_UI_HIDDEN)) {
+            evictIdle(true);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            evictIdle(false);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        evictIdle(true);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private ModelEntry entry(String id) throws IOException {
+        synchronized (models) {
+            ModelEntry entry = models.get(id);
+            if (entry == null) throw new IOException("Modelo no encontrado: " + id);
+            return entry;
+        }
+    }
+
+    private Lease acquire(ModelEntry entry) throws IOException {
+        entry.retain(context);
+        return new Lease(entry);
+    }
+
+    private List<String> readAssetLabels(String modelPath) {
+        String labelsPath = modelPath.substring(0, modelPath.length() - MODEL_EXTENSION.length()) + LABELS_EXTENSION;
+        try (InputStream stream = context.getAssets().open(labelsPath)) {
+            return readLabels(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return DEFAULT_LABELS;
+        }
+    }
+
+    private static List<String> readFileLabels(File model) {
+        String name = model.getName();
+        File labels = new File(model.getParentFile(), name.substring(0, name.length() - MODEL_EXTENSION.length()) + LABELS_EXTENSION);
+        if (!labels.isFile()) return DEFAULT_LABELS;
+        try {
+            return readLabels(new FileReader(labels));
+        } catch (IOException e) {
+            Log.w(TAG, "No se pudieron leer las etiquetas de " + name, e);
+            return DEFAULT_LABELS;
+        }
+    }
+
+    private static List<String> readLabels(Reader source) throws IOException {
+        List<String> labels = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(source)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) labels.add(line);
+            }
+        }
+        return labels.isEmpty() ? DEFAULT_LABELS : Collections.unmodifiableList(labels);
+    }
+
+    private static String idOf(String fileName) {
+        return fileName.substring(0, fileName.length() - MODEL_EXTENSION.length());
+    }
+
+    /**
+     * Mapea un asset sin comprimir en memoria de solo lectura
+     */
+    static MappedByteBuffer mapAsset(Context context, String assetName) throws IOException {
+        try (AssetFileDescriptor fileDescriptor = context.getAssets().openFd(assetName);
+             FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor())) {
+            FileChannel fileChannel = inputStream.getChannel();
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY,
+                    fileDescriptor.getStartOffset(),
+                    fileDescriptor.getDeclaredLength());
+        }
+    }
+
+    static MappedByteBuffer mapFile(File file) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            FileChannel fileChannel = inputStream.getChannel();
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        }
+    }
+
+    /**
+     * Uso reservado de un modelo. Mientras esté abierto el modelo no se libera.
+     */
+    public static class Lease implements AutoCloseable {
+        private final ModelEntry entry;
+        private boolean closed = false;
+
+        private Lease(ModelEntry entry) {
+            this.entry = entry;
+        }
+
+        public String getId() {
+            return entry.id;
+        }
+
+        public List<String> getLabels() {
+            return entry.labels;
+        }
+
+        /**
+         * Modelo mapeado, para crear intérpretes propios (por ejemplo, uno por hilo)
+         */
+        public MappedByteBuffer getBuffer() {
+            synchronized (entry) {
+                return entry.buffer;
+            }
+        }
+
+        /**
+         * Inferencia con el intérprete compartido del modelo; las llamadas concurrentes se serializan
+         */
+        public void run(ByteBuffer input, float[][] output) {
+            synchronized (entry) {
+                entry.interpreter.run(input, output);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            entry.release();
+        }
+    }
+
+    private static class ModelEntry {
+        final String id;
+        final String assetPath;
+        final File file;
+        final List<String> labels;
+        /**
+         * Tamaño y fecha del archivo al descubrirlo, para notar un modelo reemplazado con el mismo nombre
+         */
+        final long fileLength;
+        final long fileModified;
+
+        // Protegidos por el monitor de la entrada
+        MappedByteBuffer buffer;
+        Interpreter interpreter;
+        int leases = 0;
+        boolean retired = false;
+        volatile long lastUsedMs = SystemClock.uptimeMillis();
+
+        ModelEntry(String id, String assetPath, File file, List<String> labels) {
+            this.id = id;
+            this.assetPath = assetPath;
+            this.file = file;
+            this.labels = labels;
+            this.fileLength = file != null ? file.length() : 0;
+            this.fileModified = file != null ? file.lastModified() : 0;
+        }
+
+        /**
+         * Los assets solo cambian con una APK nueva; los archivos, también si cambian su tamaño o su fecha
+         */
+        boolean sameSource(ModelEntry other) {
+            boolean sameFile = assetPath != null
+                    ? assetPath.equals(other.assetPath)
+                    : file.equals(other.file) && fileLength == other.fileLength && fileModified == other.fileModified;
+            return sameFile && labels.equals(other.labels);
+        }
+
+        synchronized void retain(Context context) throws IOException {
+            if (interpreter == null) {
+                long start = SystemClock.uptimeMillis();
+                buffer = assetPath != null ? mapAsset(context, assetPath) : mapFile(file);
+                interpreter = new Interpreter(buffer);
+                Log.d(TAG, "Modelo " + id + " mapeado en " + (SystemClock.uptimeMillis() - start) + " ms");
+            }
+            leases++;
+            touch();
+        }
+
+        synchronized void release() {
+            leases--;
+            touch();
+            if (retired) unloadIfUnused();
+        }
+
+        /**
+         * El modelo ya no está en el registro: se cierra en cuanto nadie lo use
+         */
+        synchronized void retire() {
+            retired = true;
+            unloadIfUnused();
+        }
+
+        void touch() {
+            lastUsedMs = SystemClock.uptimeMillis();
+        }
+
+        synchronized boolean unloadIfUnused() {
+            if (leases > 0 || interpreter == null) return false;
+            interpreter.close();
+            interpreter = null;
+            // El mapeo se libera cuando el recolector descarta el buffer
+            buffer = null;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.drateor.diabeticscan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Captura simultánea en varias cámaras (por ejemplo, una por pie), alineada en el tiempo.
+ *
+ * Pide una captura a cada pipeline y cada uno entrega su próximo frame apto. Si las marcas de
+ * tiempo quedan más separadas que la tolerancia, se vuelven a pedir las capturas que quedaron
+ * viejas respecto de la más nueva, hasta {@value #MAX_ROUNDS} veces. Con una tolerancia de al
+ * menos medio período de la cámara más lenta, una vuelta alcanza si los frames son aptos.
+ * Si una cámara rechaza su captura (vence el plazo o se detiene su stream), se rechaza el par
+ * y se cancelan las capturas de las demás.
+ */
+class PairedCapture {
+
+    /**
+     * Medio período de una FLIR One (8.7 fps)
+     */
+    static final long DEFAULT_TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(60);
+
+    static final int MAX_ROUNDS = 6;
+
+    interface Callback {
+        /**
+         * Una captura por cámara, en el orden de las cámaras
+         *
+         * @param skewNanos diferencia entre la captura más vieja y la más nueva
+         */
+        void onCaptured(List<Shot> shots, long skewNanos);
+
+        void onRejected(String reason);
+    }
+
+    static final class Shot {
+        final String cameraId;
+        final ThermalFrame frame;
+        final int[] argb;
+
+        Shot(String cameraId, ThermalFrame frame, int[] argb) {
+            this.cameraId = cameraId;
+            this.frame = frame;
+            this.argb = argb;
+        }
+    }
+
+    private final String[] cameraIds;
+    private final FramePipeline[] pipelines;
+    private final long toleranceNanos;
+    private final Callback callback;
+
+    // Protegidos por this
+    private final Shot[] shots;
+    private int rounds = 0;
+    private boolean finished = false;
+
+    /**
+     * @param pipelines pipeline de cada cámara, por identificador, en el orden de entrega
+     */
+    PairedCapture(Map<String, FramePipeline> pipelines, long toleranceNanos, Callback callback) {
+        this.cameraIds = pipelines.keySet().toArray(new String[0]);
+        this.pipelines = pipelines.values().toArray(new FramePipeline[0]);
+        this.toleranceNanos = toleranceNanos;
+        this.callback = callback;
+        this.shots = new Shot[cameraIds.length];
+    }
+
+    void start() {
+        if (pipelines.length == 0) {
+            callback.onRejected("No hay cámaras transmitiendo");
+            return;
+        }
+        for (int i = 0; i < pipelines.length; i++) request(i);
+    }
+
+    private void request(int index) {
+        pipelines[index].requestCapture(new FramePipeline.CaptureCallback() {
+            @Override
+            public void onCaptured(ThermalFrame frame, int[] argb) {
+                onShot(index, new Shot(cameraIds[index], frame, argb));
+            }
+
+            @Override
+            public void onRejected(String reason) {
+                reject(cameraIds[index] + ": " + reason);
+            }
+        });
+    }
+
+    /**
+     * En el hilo de la cámara que capturó
+     */
+    private void onShot(int index, Shot shot) {
+        List<Shot> result;
+        long skew;
+        List<Integer> retry = new ArrayList<>();
+        synchronized (this) {
+            if (finished) return;
+            shots[index] = shot;
+
+            long oldest = Long.MAX_VALUE;
+            long newest = Long.MIN_VALUE;
+            for (Shot s : shots) {
+                if (s == null) return;
+                oldest = Math.min(oldest, s.frame.timestampNanos);
+                newest = Math.max(newest, s.frame.timestampNanos);
+            }
+            skew = newest - oldest;
+
+            if (skew > toleranceNanos) {
+                if (++rounds >= MAX_ROUNDS) {
+                    finished = true;
+                    result = null;
+                } else {
+                    // Las más viejas se vuelven a pedir; la más nueva queda como referencia
+                    for (int i = 0; i < shots.length; i++) {
+                        if (newest - shots[i].frame.timestampNanos > toleranceNanos) {
+                            shots[i] = null;
+                            retry.add(i);
+                        }
+                    }
+                    result = null;
+                }
+            } else {
+                finished = true;
+                result = new ArrayList<>();
+                Collections.addAll(result, shots);
+            }
+        }
+
+        for (int i : retry) request(i);
+        if (result != null) {
+            callback.onCaptured(result, skew);
+        } else if (retry.isEmpty()) {
+            callback.onRejected("Las cámaras no lograron capturas simultáneas ("
+                    + TimeUnit.NANOSECONDS.toMillis(skew) + " ms de diferencia)");
+        }
+    }
+
+    private void reject(String reason) {
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+        }
+        // Las demás cámaras no deben quedar esperando para capturar
+        for (FramePipeline pipeline : pipelines) pipeline.cancelCapture();
+        callback.onRejected(reason);
+    }
+}
@@ -0,0 +1,86 @@
+package com.drateor.diabeticscan;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores y latencias del pipeline de frames.
+ * Registrar es barato y sin reservas de memoria; los percentiles se calculan bajo demanda.
+ */
+class PipelineStats {
+
+    private static final int LATENCY_SAMPLES = 4096;
+
+    final AtomicLong framesIn = new AtomicLong();
+    final AtomicLong framesDisplayed = new AtomicLong();
+    final AtomicLong framesUnchanged = new AtomicLong();
+    final AtomicLong framesThrottled = new AtomicLong();
+    final AtomicLong inferencesRun = new AtomicLong();
+    final AtomicLong inferencesSkipped = new AtomicLong();
+    final AtomicLong captures = new AtomicLong();
+    final AtomicLong capturesRejected = new AtomicLong();
+    final AtomicLong framesLowQuality = new AtomicLong();
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCursor = 0;
+    private int latencyCount = 0;
+
+    /**
+     * Latencia de extremo a extremo de un frame, desde que la fuente lo entregó hasta que se mostró
+     */
+    synchronized void recordLatency(long nanos) {
+        latencies[latencyCursor] = nanos;
+        latencyCursor = (latencyCursor + 1) % LATENCY_SAMPLES;
+        if (latencyCount < LATENCY_SAMPLES) latencyCount++;
+    }
+
+    /**
+     * Percentil de latencia (0–100) sobre las últimas muestras, en nanosegundos
+     */
+    long latencyPercentileNanos(double percentile) {
+        long[] samples;
+        synchronized (this) {
+            if (latencyCount == 0) return 0;
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile / 100.0 * samples.length) - 1;
+        return samples[Math.max(0, Math.min(samples.length - 1, index))];
+    }
+
+    /**
+     * Fracción de frames saltados por no cambiar respecto del último procesado (0–1)
+     */
+    double getSkipRate() {
+        long in = framesIn.get();
+        return in == 0 ? 0 : framesUnchanged.get() / (double) in;
+    }
+
+    /**
+     * Resumen de una línea del stream en curso: frames, saltados sin cambios, calidad,
+     * inferencias y latencia
+     */
+    String summary() {
+        return String.format(Locale.US,
+                "%d frames, %d mostrados, %.0f%% sin cambios, %d sin colorear, %d no aptos, "
+                        + "inferencias %d (omitidas %d), latencia p50 %.1f ms p95 %.1f ms",
+                framesIn.get(), framesDisplayed.get(), getSkipRate() * 100, framesThrottled.get(),
+                framesLowQuality.get(), inferencesRun.get(), inferencesSkipped.get(),
+                latencyPercentileNanos(50) / 1e6, latencyPercentileNanos(95) / 1e6);
+    }
+
+    synchronized void reset() {
+        framesIn.set(0);
+        framesDisplayed.set(0);
+        framesUnchanged.set(0);
+        framesThrottled.set(0);
+        inferencesRun.set(0);
+        inferencesSkipped.set(0);
+        captures.set(0);
+        capturesRejected.set(0);
+        framesLowQuality.set(0);
+        latencyCursor = 0;
+        latencyCount = 0;
+    }
+}
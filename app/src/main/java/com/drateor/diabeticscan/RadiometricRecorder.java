@@ -0,0 +1,298 @@
+package com.drateor.diabeticscan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Graba frames radiométricos crudos (16 bits) en un archivo de solo-anexar.
+ *
+ * Formato (little endian):
+ * <pre>
+ *   cabecera  "DSRF", versión (short), reservado (short), ancho, alto,
+ *             intervalo de frames clave, inicio en epoch ms (long), reservado (int)
+ *   frame     longitud del payload (int), timestamp ns (long), tipo (byte), payload
+ *   índice    "DSIX", n, n × (offset (long), timestamp (long), tipo (byte))
+ *   cola      offset del índice (long), "DSEN"
+ * </pre>
+ * El payload es una secuencia de varints zigzag: diferencia de cada píxel contra el mismo
+ * píxel del frame anterior (frame delta) o contra el píxel anterior (frame clave).
+ * El índice solo se escribe al cerrar; si la grabación se corta, el lector lo reconstruye.
+ *
+ * El hilo del stream solo copia el frame a un buffer del pool; la codificación y la
+ * escritura ocurren en un hilo propio, así la grabación nunca frena al stream. Si el disco
+ * se atrasa, el pool crece hasta {@value #MAX_POOL_BYTES} bytes; pasado ese límite los frames
+ * se descartan y se cuentan en {@link #getDroppedFrames()}. El archivo no pasa de
+ * {@value #MAX_FILE_BYTES} bytes, lo que el lector puede mapear: al llegar ahí deja de grabar.
+ */
+class RadiometricRecorder {
+
+    static final int MAGIC = 0x46525344;        // "DSRF"
+    static final int INDEX_MAGIC = 0x58495344;  // "DSIX"
+    static final int END_MAGIC = 0x4E455344;    // "DSEN"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int FRAME_HEADER_BYTES = 13;
+    static final int INDEX_ENTRY_BYTES = 17;
+    static final int FOOTER_BYTES = 12;
+    static final byte TYPE_KEY = 0;
+    static final byte TYPE_DELTA = 1;
+    static final int KEYFRAME_INTERVAL = 64;
+
+    /**
+     * Tamaño máximo del archivo, el que {@link RadiometricRecording} puede mapear de una vez
+     */
+    static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+    private static final int POOL_SIZE = 8;
+    private static final int MAX_POOL_BYTES = 32 << 20;
+
+    private final int width;
+    private final int height;
+    private final FileOutputStream output;
+    private final FileChannel channel;
+    private final Thread writerThread;
+
+    private final LinkedBlockingQueue<ThermalFrame> pending = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedQueue<ThermalFrame> freeFrames = new ConcurrentLinkedQueue<>();
+    private final ThermalFrame endMarker = new ThermalFrame(0, 0);
+
+    private final ByteBuffer encodeBuffer;
+    private final ThermalFrame previous;
+    private final int maxBuffers;
+
+    private long[] indexOffsets = new long[256];
+    private long[] indexTimestamps = new long[256];
+    private byte[] indexTypes = new byte[256];
+    private int frameCount = 0;
+
+    private volatile boolean closed = false;
+    private volatile IOException writeError;
+    private volatile int maxPending = 0;
+    private volatile int extraBuffers = 0;
+    private final AtomicInteger droppedFrames = new AtomicInteger();
+    private volatile boolean full = false;
+
+    RadiometricRecorder(File file, int width, int height) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.output = new FileOutputStream(file, false);
+        this.channel = output.getChannel();
+        this.previous = new ThermalFrame(width, height);
+
+        // Peor caso: diferencia de 17 bits en zigzag = varint de 3 bytes por píxel
+        this.encodeBuffer = ByteBuffer.allocateDirect(FRAME_HEADER_BYTES + width * height * 3)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        this.maxBuffers = Math.max(POOL_SIZE, MAX_POOL_BYTES / (width * height * 2));
+        for (int i = 0; i < POOL_SIZE; i++) {
+            freeFrames.add(new ThermalFrame(width, height));
+        }
+
+        writeHeader();
+
+        writerThread = new Thread(this::writeLoop, "radiometric-recorder");
+        writerThread.start();
+    }
+
+    /**
+     * Encola una copia del frame. Llamar desde el hilo del stream; no bloquea.
+     */
+    void offer(ThermalFrame frame) {
+        if (closed || frame.width != width || frame.height != height) return;
+        if (full) {
+            droppedFrames.incrementAndGet();
+            return;
+        }
+
+        ThermalFrame slot = freeFrames.poll();
+        if (slot == null) {
+            if (POOL_SIZE + extraBuffers >= maxBuffers) {
+                // El disco no da abasto y el pool llegó a su máximo: descartar antes que agotar la memoria
+                droppedFrames.incrementAndGet();
+                return;
+            }
+            slot = new ThermalFrame(width, height);
+            extraBuffers++;
+        }
+        slot.copyFrom(frame);
+        pending.add(slot);
+
+        int size = pending.size();
+        if (size > maxPending) maxPending = size;
+    }
+
+    /**
+     * Termina de escribir los frames pendientes, agrega el índice y cierra el archivo
+     */
+    void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        pending.add(endMarker);
+
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            if (writeError == null) writeIndex();
+        } catch (IOException e) {
+            writeError = e;
+        } finally {
+            output.close();
+        }
+
+        if (writeError != null) throw writeError;
+    }
+
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    int getMaxPending() {
+        return maxPending;
+    }
+
+    int getExtraBuffers() {
+        return extraBuffers;
+    }
+
+    /**
+     * Frames que no se grabaron por falta de buffers o porque el archivo llegó a su tamaño máximo
+     */
+    int getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ThermalFrame frame;
+            try {
+                frame = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame == endMarker) return;
+
+            if (writeError == null) {
+                try {
+                    writeFrame(frame);
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            }
+            freeFrames.add(frame);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) 0);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(KEYFRAME_INTERVAL);
+        header.putLong(System.currentTimeMillis());
+        header.putInt(0);
+        header.flip();
+        writeFully(header);
+    }
+
+    private void writeFrame(ThermalFrame frame) throws IOException {
+        boolean key = frameCount % KEYFRAME_INTERVAL == 0;
+        short[] current = frame.raw;
+        short[] reference = previous.raw;
+
+        ByteBuffer out = encodeBuffer;
+        out.clear();
+        out.position(FRAME_HEADER_BYTES);
+
+        int previousPixel = 0;
+        for (int i = 0; i < current.length; i++) {
+            int value = current[i] & 0xFFFF;
+            int base = key ? previousPixel : reference[i] & 0xFFFF;
+            writeVarint(out, zigzag(value - base));
+            previousPixel = value;
+        }
+
+        int payloadBytes = out.position() - FRAME_HEADER_BYTES;
+        long indexBytes = 8 + (frameCount + 1L) * INDEX_ENTRY_BYTES + FOOTER_BYTES;
+        if (channel.position() + out.position() + indexBytes > MAX_FILE_BYTES) {
+            // El resto del stream no se graba; el archivo sigue siendo legible
+            full = true;
+            droppedFrames.incrementAndGet();
+            return;
+        }
+        out.putInt(0, payloadBytes);
+        out.putLong(4, frame.timestampNanos);
+        out.put(12, key ? TYPE_KEY : TYPE_DELTA);
+        out.flip();
+
+        appendIndex(channel.position(), frame.timestampNanos, key ? TYPE_KEY : TYPE_DELTA);
+        writeFully(out);
+        previous.copyFrom(frame);
+    }
+
+    private void appendIndex(long offset, long timestamp, byte type) {
+        if (frameCount == indexOffsets.length) {
+            int size = indexOffsets.length * 2;
+            indexOffsets = Arrays.copyOf(indexOffsets, size);
+            indexTimestamps = Arrays.copyOf(indexTimestamps, size);
+            indexTypes = Arrays.copyOf(indexTypes, size);
+        }
+        indexOffsets[frameCount] = offset;
+        indexTimestamps[frameCount] = timestamp;
+        indexTypes[frameCount] = type;
+        frameCount++;
+    }
+
+    private void writeIndex() throws IOException {
+        long indexOffset = channel.position();
+        ByteBuffer index = ByteBuffer.allocate(8 + frameCount * INDEX_ENTRY_BYTES + FOOTER_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(INDEX_MAGIC);
+        index.putInt(frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            index.putLong(indexOffsets[i]);
+            index.putLong(indexTimestamps[i]);
+            index.put(indexTypes[i]);
+        }
+        index.putLong(indexOffset);
+        index.putInt(END_MAGIC);
+        index.flip();
+        writeFully(index);
+        channel.force(false);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+}
@@ -0,0 +1,199 @@
+package com.drateor.diabeticscan;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lector de una grabación de {@link RadiometricRecorder}.
+ * Mapea el archivo en memoria y decodifica frames bajo demanda, sin copiar el archivo.
+ * Si la grabación no se cerró bien (sin índice), reconstruye el índice recorriendo los frames.
+ * No es seguro entre hilos: cada hilo debe usar su propia instancia.
+ */
+class RadiometricRecording {
+
+    private final MappedByteBuffer map;
+    private final int width;
+    private final int height;
+    private final long startEpochMillis;
+
+    private long[] offsets;
+    private long[] timestamps;
+    private byte[] types;
+    private int frameCount;
+
+    private final ThermalFrame decoded;
+    private int decodedIndex = -1;
+
+    RadiometricRecording(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > RadiometricRecorder.MAX_FILE_BYTES) {
+                throw new IOException("Grabación de " + channel.size() + " bytes: el máximo es "
+                        + RadiometricRecorder.MAX_FILE_BYTES + " (" + file + ")");
+            }
+            // El mapeo sigue siendo válido después de cerrar el canal
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (map.limit() < RadiometricRecorder.HEADER_BYTES || map.getInt(0) != RadiometricRecorder.MAGIC) {
+            throw new IOException("No es una grabación radiométrica: " + file);
+        }
+        if (map.getShort(4) != RadiometricRecorder.VERSION) {
+            throw new IOException("Versión de grabación no soportada: " + map.getShort(4));
+        }
+        width = map.getInt(8);
+        height = map.getInt(12);
+        startEpochMillis = map.getLong(20);
+        decoded = new ThermalFrame(width, height);
+
+        if (!readIndex()) {
+            rebuildIndex();
+        }
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    long getTimestampNanos(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Decodifica el frame indicado en {@code out}. La lectura secuencial cuesta un solo frame;
+     * los saltos decodifican desde el frame clave anterior.
+     */
+    void readFrame(int index, ThermalFrame out) throws IOException {
+        if (index < 0 || index >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + index + " de " + frameCount);
+        }
+
+        int from;
+        if (decodedIndex >= 0 && index > decodedIndex && !hasKeyBetween(decodedIndex + 1, index)) {
+            from = decodedIndex + 1;
+        } else if (index == decodedIndex) {
+            from = index + 1;
+        } else {
+            from = index;
+            while (types[from] != RadiometricRecorder.TYPE_KEY) from--;
+        }
+
+        for (int i = from; i <= index; i++) {
+            decode(i);
+        }
+        out.copyFrom(decoded);
+    }
+
+    private boolean hasKeyBetween(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            if (types[i] == RadiometricRecorder.TYPE_KEY) return true;
+        }
+        return false;
+    }
+
+    private void decode(int index) throws IOException {
+        int position = (int) offsets[index];
+        int payloadBytes = map.getInt(position);
+        int end = position + RadiometricRecorder.FRAME_HEADER_BYTES + payloadBytes;
+        if (end > map.limit()) throw new IOException("Frame " + index + " truncado");
+
+        boolean key = types[index] == RadiometricRecorder.TYPE_KEY;
+        short[] raw = decoded.raw;
+        int cursor = position + RadiometricRecorder.FRAME_HEADER_BYTES;
+        int previousPixel = 0;
+
+        for (int i = 0; i < raw.length; i++) {
+            int result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (cursor >= end) throw new IOException("Frame " + index + " corrupto");
+                b = map.get(cursor++);
+                result |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            int base = key ? previousPixel : raw[i] & 0xFFFF;
+            int value = base + RadiometricRecorder.unzigzag(result);
+            raw[i] = (short) value;
+            previousPixel = value & 0xFFFF;
+        }
+
+        decoded.timestampNanos = map.getLong(position + 4);
+        decodedIndex = index;
+    }
+
+    private boolean readIndex() {
+        int limit = map.limit();
+        if (limit < RadiometricRecorder.HEADER_BYTES + RadiometricRecorder.FOOTER_BYTES) return false;
+        if (map.getInt(limit - 4) != RadiometricRecorder.END_MAGIC) return false;
+
+        long indexOffset = map.getLong(limit - RadiometricRecorder.FOOTER_BYTES);
+        if (indexOffset < RadiometricRecorder.HEADER_BYTES || indexOffset + 8 > limit) return false;
+        int position = (int) indexOffset;
+        if (map.getInt(position) != RadiometricRecorder.INDEX_MAGIC) return false;
+
+        int count = map.getInt(position + 4);
+        if (position + 8L + (long) count * RadiometricRecorder.INDEX_ENTRY_BYTES > limit) return false;
+
+        offsets = new long[count];
+        timestamps = new long[count];
+        types = new byte[count];
+        position += 8;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = map.getLong(position);
+            timestamps[i] = map.getLong(position + 8);
+            types[i] = map.get(position + 16);
+            position += RadiometricRecorder.INDEX_ENTRY_BYTES;
+        }
+        frameCount = count;
+        return true;
+    }
+
+    private void rebuildIndex() {
+        offsets = new long[64];
+        timestamps = new long[64];
+        types = new byte[64];
+        frameCount = 0;
+
+        int position = RadiometricRecorder.HEADER_BYTES;
+        int limit = map.limit();
+        while (position + RadiometricRecorder.FRAME_HEADER_BYTES <= limit) {
+            int payloadBytes = map.getInt(position);
+            byte type = map.get(position + 12);
+            long end = (long) position + RadiometricRecorder.FRAME_HEADER_BYTES + payloadBytes;
+            boolean validType = type == RadiometricRecorder.TYPE_KEY || type == RadiometricRecorder.TYPE_DELTA;
+            // Un frame a medio escribir marca el final de los datos útiles
+            if (payloadBytes <= 0 || end > limit || !validType) break;
+            if (frameCount == 0 && type != RadiometricRecorder.TYPE_KEY) break;
+
+            if (frameCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, frameCount * 2);
+                timestamps = Arrays.copyOf(timestamps, frameCount * 2);
+                types = Arrays.copyOf(types, frameCount * 2);
+            }
+            offsets[frameCount] = position;
+            timestamps[frameCount] = map.getLong(position + 4);
+            types[frameCount] = type;
+            frameCount++;
+            position = (int) end;
+        }
+    }
+}
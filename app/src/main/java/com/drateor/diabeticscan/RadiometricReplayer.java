@@ -0,0 +1,108 @@
+package com.drateor.diabeticscan;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reproduce una grabación radiométrica como {@link FrameSource}: sus frames pasan por el mismo
+ * pipeline que los de la cámara (calidad, rango, paleta, capturas e inferencia en vivo).
+ * Respeta los tiempos originales, o entrega tan rápido como el consumidor lo permita, y vuelve
+ * a empezar al terminar. No reserva memoria por frame.
+ */
+class RadiometricReplayer implements FrameSource {
+
+    private static final String TAG = "RadiometricReplayer";
+
+    private final RadiometricRecording recording;
+    private final boolean realTime;
+    private Thread thread;
+    private volatile boolean streaming = false;
+
+    RadiometricReplayer(File file) throws IOException {
+        this(file, true);
+    }
+
+    /**
+     * @param realTime true para respetar los tiempos originales, false para máxima velocidad
+     */
+    RadiometricReplayer(File file, boolean realTime) throws IOException {
+        this.recording = new RadiometricRecording(file);
+        this.realTime = realTime;
+    }
+
+    int getFrameCount() {
+        return recording.getFrameCount();
+    }
+
+    /**
+     * Inicia la reproducción en un hilo propio
+     */
+    @Override
+    public synchronized void start(Callback callback) {
+        if (streaming) return;
+        streaming = true;
+        thread = new Thread(() -> play(callback), "radiometric-replayer");
+        thread.start();
+    }
+
+    /**
+     * Detiene la reproducción y espera a que termine el hilo
+     */
+    @Override
+    public synchronized void stop() {
+        streaming = false;
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    private void play(Callback callback) {
+        int count = recording.getFrameCount();
+        if (count == 0) {
+            streaming = false;
+            callback.onError("La grabación no tiene frames");
+            return;
+        }
+        ThermalFrame frame = new ThermalFrame(recording.getWidth(), recording.getHeight());
+        long recordingStart = recording.getTimestampNanos(0);
+
+        try {
+            while (streaming) {
+                long wallStart = System.nanoTime();
+                for (int i = 0; i < count && streaming; i++) {
+                    if (realTime) {
+                        long due = wallStart + (recording.getTimestampNanos(i) - recordingStart);
+                        long waitNanos = due - System.nanoTime();
+                        if (waitNanos > 0) {
+                            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                        }
+                    }
+
+                    recording.readFrame(i, frame);
+                    // Los tiempos grabados son de otra sesión: la latencia se mide desde la entrega
+                    frame.timestampNanos = System.nanoTime();
+                    callback.onFrame(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Reproducción interrumpida");
+        } catch (IOException e) {
+            Log.e(TAG, "Error leyendo la grabación", e);
+            callback.onError("Error leyendo la grabación: " + e.getMessage());
+        } finally {
+            streaming = false;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.drateor.diabeticscan;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Cola persistente de capturas pendientes de sincronizar, un archivo por captura.
+ *
+ * Cada captura se escribe en un temporal y se renombra, así un corte de energía nunca deja
+ * una entrada a medias. Los nombres empiezan con la hora de captura y se envían en ese orden.
+ * Una etiqueta opcional (por ejemplo, el par y el pie de una captura pareada) viaja en el nombre,
+ * que el servidor recibe con cada captura.
+ * El lote en curso se guarda en un manifiesto para que, tras un fallo o un reinicio, se reanude
+ * el mismo lote con el mismo identificador y el servidor pueda descartar lo ya recibido.
+ */
+class ScanQueue {
+
+    static final String SCAN_EXTENSION = ".scan";
+    private static final String TMP_EXTENSION = ".tmp";
+    private static final String BATCH_MANIFEST = "lote.txt";
+
+    /**
+     * Contenido de una captura, escrito directamente al archivo de la cola
+     */
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    static class Entry {
+        final File file;
+        final String name;
+        final long capturedAtMillis;
+        /**
+         * Etiqueta de la captura, vacía si no tiene
+         */
+        final String label;
+
+        Entry(File file) {
+            this.file = file;
+            this.name = file.getName();
+            int sequenceStart = name.indexOf('_');
+            this.capturedAtMillis = Long.parseLong(name.substring(0, sequenceStart));
+            int labelStart = name.indexOf('_', sequenceStart + 1);
+            this.label = labelStart < 0 ? "" : name.substring(labelStart + 1, name.length() - SCAN_EXTENSION.length());
+        }
+    }
+
+    static class Batch {
+        final String id;
+        final List<Entry> entries;
+        /**
+         * true si el lote venía de un intento anterior y puede estar recibido en parte
+         */
+        final boolean resumed;
+
+        Batch(String id, List<Entry> entries, boolean resumed) {
+            this.id = id;
+            this.entries = Collections.unmodifiableList(entries);
+            this.resumed = resumed;
+        }
+
+        /**
+         * Tamaño de las capturas, casi todo el envío
+         */
+        long bytes() {
+            long bytes = 0;
+            for (Entry entry : entries) bytes += entry.file.length();
+            return bytes;
+        }
+    }
+
+    private final File dir;
+    private int sequence = 0;
+
+    ScanQueue(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Agrega una captura a la cola
+     */
+    synchronized Entry add(long capturedAtMillis, Content content) throws IOException {
+        return add(capturedAtMillis, null, content);
+    }
+
+    /**
+     * Agrega una captura con etiqueta; los caracteres que no sirven en un nombre de archivo se
+     * reemplazan por '-'
+     */
+    synchronized Entry add(long capturedAtMillis, String label, Content content) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("No se pudo crear la cola en " + dir);
+        }
+        String suffix = label == null || label.isEmpty() ? "" : "_" + label.replaceAll("[^A-Za-z0-9._-]", "-");
+        File file;
+        do {
+            file = new File(dir, String.format(Locale.US, "%015d_%04d%s%s", capturedAtMillis, sequence++ % 10000, suffix, SCAN_EXTENSION));
+        } while (file.exists());
+
+        File tmp = new File(dir, file.getName() + TMP_EXTENSION);
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            content.writeTo(out);
+            out.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("No se pudo encolar " + file.getName());
+        }
+        return new Entry(file);
+    }
+
+    /**
+     * Capturas pendientes, de la más antigua a la más nueva
+     */
+    synchronized List<Entry> pending() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SCAN_EXTENSION));
+        if (files == null) return new ArrayList<>();
+        Arrays.sort(files);
+        List<Entry> entries = new ArrayList<>(files.length);
+        for (File file : files) entries.add(new Entry(file));
+        return entries;
+    }
+
+    synchronized int size() {
+        return pending().size();
+    }
+
+    /**
+     * Lote a enviar: el que quedó a medias si lo hay, o uno nuevo con las capturas más antiguas
+     * hasta los límites dados (siempre al menos una). Devuelve null si la cola está vacía.
+     */
+    synchronized Batch currentBatch(int maxScans, long maxBytes) throws IOException {
+        Batch resumed = readManifest();
+        if (resumed != null) return resumed;
+
+        List<Entry> selected = new ArrayList<>();
+        long bytes = 0;
+        for (Entry entry : pending()) {
+            long length = entry.file.length();
+            if (!selected.isEmpty() && (selected.size() >= maxScans || bytes + length > maxBytes)) break;
+            selected.add(entry);
+            bytes += length;
+        }
+        if (selected.isEmpty()) return null;
+
+        Batch batch = new Batch(UUID.randomUUID().toString(), selected, false);
+        writeManifest(batch);
+        return batch;
+    }
+
+    /**
+     * El servidor confirmó el lote completo: se borran sus capturas y el manifiesto
+     */
+    synchronized void complete(Batch batch) {
+        for (Entry entry : batch.entries) entry.file.delete();
+        new File(dir, BATCH_MANIFEST).delete();
+    }
+
+    private Batch readManifest() throws IOException {
+        File manifest = new File(dir, BATCH_MANIFEST);
+        if (!manifest.isFile()) return null;
+
+        String id;
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(manifest))) {
+            id = reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                File file = new File(dir, line);
+                // Si falta una captura el lote ya no se puede reproducir igual: se arma uno nuevo
+                if (!file.isFile()) {
+                    manifest.delete();
+                    return null;
+                }
+                entries.add(new Entry(file));
+            }
+        }
+        if (id == null || entries.isEmpty()) {
+            manifest.delete();
+            return null;
+        }
+        return new Batch(id, entries, true);
+    }
+
+    private void writeManifest(Batch batch) throws IOException {
+        File manifest = new File(dir, BATCH_MANIFEST);
+        File tmp = new File(dir, BATCH_MANIFEST + TMP_EXTENSION);
+        try (FileOutputStream stream = new FileOutputStream(tmp);
+             Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8)) {
+            writer.write(batch.id);
+            writer.write('\n');
+            for (Entry entry : batch.entries) {
+                writer.write(entry.name);
+                writer.write('\n');
+            }
+            writer.flush();
+            stream.getFD().sync();
+        }
+        if (!tmp.renameTo(manifest)) {
+            throw new IOException("No se pudo guardar el lote " + batch.id);
+        }
+    }
+}
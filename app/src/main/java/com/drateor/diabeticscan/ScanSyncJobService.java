@@ -0,0 +1,162 @@
+package com.drateor.diabeticscan;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sincroniza en segundo plano las capturas con el servidor de la clínica.
+ *
+ * Las capturas se encolan en disco ({@link ScanQueue}) y el envío lo programa JobScheduler
+ * con red disponible y batería no baja; {@link SyncBudget} suma el cupo diario y la velocidad
+ * a batería. El trabajo corre en un hilo propio, nunca en el principal. Si el envío queda a
+ * medias, el job se reprograma con espera exponencial y retoma el mismo lote.
+ */
+public class ScanSyncJobService extends JobService {
+
+    private static final String TAG = "ScanSync";
+    private static final int JOB_ID = 3501;
+    private static final String QUEUE_DIR = "sincronizacion";
+    private static final int JPEG_QUALITY = 95;
+
+    /**
+     * Escrituras a la cola fuera del hilo principal, en orden
+     */
+    private static final ExecutorService enqueueExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "scan-sync-enqueue"));
+
+    private volatile Thread worker;
+
+    /**
+     * Encola una captura para enviar y programa la sincronización. Vuelve enseguida:
+     * la compresión y la escritura se hacen en segundo plano.
+     */
+    public static void enqueue(Context context, Bitmap capture) {
+        enqueue(context, capture, null);
+    }
+
+    /**
+     * Igual que {@link #enqueue(Context, Bitmap)}, con una etiqueta que llega al servidor en el
+     * nombre de la captura (ver {@link ScanQueue})
+     */
+    public static void enqueue(Context context, Bitmap capture, String label) {
+        final Context appContext = context.getApplicationContext();
+        final long capturedAt = System.currentTimeMillis();
+        enqueueExecutor.execute(() -> {
+            try {
+                queue(appContext).add(capturedAt, label, out -> capture.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out));
+                schedule(appContext);
+            } catch (IOException e) {
+                Log.e(TAG, "No se pudo encolar la captura", e);
+            }
+        });
+    }
+
+    /**
+     * Programa el envío de la cola; si ya estaba programado no hace nada
+     */
+    public static void schedule(Context context) {
+        if (serverUrl(context) == null) return;
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler.getPendingJob(JOB_ID) != null) return;
+
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, ScanSyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setRequiresBatteryNotLow(true)
+                .setBackoffCriteria(30_000, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        URL url = serverUrl(this);
+        if (url == null) return false;
+
+        ScanQueue queue = queue(this);
+        SyncBudget budget = new SyncBudget(new File(getFilesDir(), QUEUE_DIR + "-cupo.txt"), new DevicePowerState(this));
+        ScanUploader uploader = new ScanUploader(url, queue, budget);
+
+        worker = new Thread(() -> {
+            boolean done;
+            try {
+                done = uploader.drain();
+            } catch (InterruptedException e) {
+                // onStopJob ya pidió reprogramar
+                return;
+            }
+            if (done) {
+                Log.d(TAG, "Cola sincronizada");
+            } else {
+                Log.w(TAG, "Sincronización pendiente (" + queue.size() + " capturas): " + uploader.getLastError());
+            }
+            jobFinished(params, !done);
+        }, "scan-sync");
+        worker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        Thread current = worker;
+        if (current != null) current.interrupt();
+        return true;
+    }
+
+    private static ScanQueue queue(Context context) {
+        return new ScanQueue(new File(context.getFilesDir(), QUEUE_DIR));
+    }
+
+    /**
+     * URL del servidor configurada en {@code R.string.sync_server_url}; vacía desactiva la sincronización
+     */
+    private static URL serverUrl(Context context) {
+        String value = context.getString(R.string.sync_server_url).trim();
+        if (value.isEmpty()) return null;
+        try {
+            return new URL(value);
+        } catch (IOException e) {
+            Log.e(TAG, "URL de sincronización inválida: " + value, e);
+            return null;
+        }
+    }
+
+    private static class DevicePowerState implements SyncBudget.PowerState {
+        private final BatteryManager batteryManager;
+        private final ConnectivityManager connectivityManager;
+
+        DevicePowerState(Context context) {
+            batteryManager = context.getSystemService(BatteryManager.class);
+            connectivityManager = context.getSystemService(ConnectivityManager.class);
+        }
+
+        @Override
+        public boolean isCharging() {
+            return batteryManager.isCharging();
+        }
+
+        @Override
+        public int batteryPercent() {
+            return batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        }
+
+        @Override
+        public boolean isNetworkMetered() {
+            return connectivityManager.isActiveNetworkMetered();
+        }
+    }
+}
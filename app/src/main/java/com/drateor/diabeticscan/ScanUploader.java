@@ -0,0 +1,269 @@
+package com.drateor.diabeticscan;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+
+/**
+ * Envía la cola de capturas al servidor de la clínica, varias capturas por petición.
+ *
+ * Protocolo, sobre {@code <endpoint>/lotes/<id>}:
+ * <ul>
+ *   <li>{@code HEAD}: el servidor responde en {@value #RECEIVED_HEADER} cuántas capturas
+ *   del lote ya tiene completas (0 si no lo conoce)</li>
+ *   <li>{@code POST}: cuerpo en streaming con las capturas desde {@value #OFFSET_HEADER};
+ *   cada una es {@code UTF nombre, long hora, int largo, bytes}, y un nombre vacío cierra el lote.
+ *   La respuesta trae {@value #RECEIVED_HEADER} actualizado.</li>
+ * </ul>
+ * Si un envío se corta, el siguiente intento pregunta cuántas capturas llegaron y sigue desde ahí,
+ * con espera exponencial y variación aleatoria entre intentos. Las capturas se leen de disco a
+ * medida que se envían, así un lote grande no ocupa memoria. Las capturas ya van comprimidas
+ * (JPEG), así que el cuerpo no se vuelve a comprimir: gzip gastaría CPU y batería casi sin
+ * achicar el envío. Bloquea: no llamar desde el hilo principal.
+ */
+class ScanUploader {
+
+    static final String RECEIVED_HEADER = "X-Scans-Received";
+    static final String OFFSET_HEADER = "X-Batch-Offset";
+    static final String COUNT_HEADER = "X-Batch-Count";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final String endpoint;
+    private final ScanQueue queue;
+    private final SyncBudget budget;
+    private final Sleeper sleeper;
+    private final Random jitter = new Random();
+
+    private int maxScansPerBatch = 20;
+    private long maxBatchBytes = 16L << 20;
+    private int maxAttempts = 5;
+    private long baseBackoffMs = 2_000;
+    private long maxBackoffMs = 60_000;
+    private int timeoutMs = 30_000;
+
+    private volatile String lastError;
+
+    ScanUploader(URL endpoint, ScanQueue queue, SyncBudget budget) {
+        this(endpoint, queue, budget, Thread::sleep);
+    }
+
+    ScanUploader(URL endpoint, ScanQueue queue, SyncBudget budget, Sleeper sleeper) {
+        String base = endpoint.toString();
+        this.endpoint = base.endsWith("/") ? base : base + "/";
+        this.queue = queue;
+        this.budget = budget;
+        this.sleeper = sleeper;
+    }
+
+    /**
+     * Límites de cada lote (al menos una captura por lote aunque supere los bytes)
+     */
+    ScanUploader setBatchLimits(int maxScans, long maxBytes) {
+        this.maxScansPerBatch = maxScans;
+        this.maxBatchBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Intentos por lote y espera antes del segundo intento; se duplica en cada fallo hasta el máximo
+     */
+    ScanUploader setRetry(int maxAttempts, long baseBackoffMs, long maxBackoffMs) {
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        return this;
+    }
+
+    /**
+     * Envía lotes mientras haya capturas y presupuesto
+     *
+     * @return true si la cola quedó vacía; false si hay que volver a intentar más tarde
+     */
+    boolean drain() throws InterruptedException {
+        while (true) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            String blocked = budget.blockedReason();
+            if (blocked != null) {
+                lastError = blocked;
+                return false;
+            }
+
+            // El lote se arma con lo que queda del cupo; el tamaño de las capturas es casi todo el envío
+            ScanQueue.Batch batch;
+            try {
+                batch = queue.currentBatch(maxScansPerBatch, Math.min(maxBatchBytes, budget.remainingBytes()));
+            } catch (IOException e) {
+                lastError = "Cola ilegible: " + e.getMessage();
+                return false;
+            }
+            if (batch == null) {
+                lastError = null;
+                return true;
+            }
+            if (!budget.fits(batch.bytes())) {
+                lastError = "Cupo diario insuficiente para el lote";
+                return false;
+            }
+            if (!upload(batch)) return false;
+            queue.complete(batch);
+        }
+    }
+
+    /**
+     * Motivo del último corte de {@link #drain()}, o null si terminó bien
+     */
+    String getLastError() {
+        return lastError;
+    }
+
+    private boolean upload(ScanQueue.Batch batch) throws InterruptedException {
+        long backoff = baseBackoffMs;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0) {
+                // Variación de ±25 % para que varios equipos no reintenten a la vez
+                long wait = backoff - backoff / 4 + (long) (jitter.nextDouble() * backoff / 2);
+                sleeper.sleep(wait);
+                backoff = Math.min(maxBackoffMs, backoff * 2);
+            }
+            try {
+                int offset = batch.resumed || attempt > 0 ? queryReceived(batch) : 0;
+                if (offset >= batch.entries.size()) return true;
+                if (send(batch, offset) >= batch.entries.size()) return true;
+                lastError = "Lote " + batch.id + " incompleto";
+            } catch (IOException e) {
+                lastError = "Lote " + batch.id + ": " + e.getMessage();
+            }
+        }
+        return false;
+    }
+
+    private int queryReceived(ScanQueue.Batch batch) throws IOException {
+        HttpURLConnection connection = open(batch);
+        try {
+            connection.setRequestMethod("HEAD");
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) return 0;
+            if (code / 100 != 2) throw new IOException("HTTP " + code);
+            return receivedHeader(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return capturas del lote que el servidor confirma tener
+     */
+    private int send(ScanQueue.Batch batch, int offset) throws IOException {
+        HttpURLConnection connection = open(batch);
+        CountingOutputStream wire = null;
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(BUFFER_SIZE);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty(OFFSET_HEADER, Integer.toString(offset));
+            connection.setRequestProperty(COUNT_HEADER, Integer.toString(batch.entries.size()));
+
+            wire = new CountingOutputStream(connection.getOutputStream(), budget.bytesPerSecond());
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(wire, BUFFER_SIZE))) {
+                for (int i = offset; i < batch.entries.size(); i++) {
+                    ScanQueue.Entry entry = batch.entries.get(i);
+                    long length = entry.file.length();
+                    out.writeUTF(entry.name);
+                    out.writeLong(entry.capturedAtMillis);
+                    out.writeInt((int) length);
+                    try (InputStream in = new FileInputStream(entry.file)) {
+                        long remaining = length;
+                        int read;
+                        while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0) {
+                            out.write(buffer, 0, read);
+                            remaining -= read;
+                        }
+                        if (remaining > 0) throw new IOException("Captura truncada: " + entry.name);
+                    }
+                }
+                out.writeUTF("");
+            }
+
+            int code = connection.getResponseCode();
+            if (code / 100 != 2) throw new IOException("HTTP " + code);
+            return receivedHeader(connection);
+        } finally {
+            if (wire != null) budget.record(wire.count);
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(ScanQueue.Batch batch) throws IOException {
+        URL url = new URL(endpoint + "lotes/" + batch.id);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    private static int receivedHeader(HttpURLConnection connection) throws IOException {
+        String value = connection.getHeaderField(RECEIVED_HEADER);
+        if (value == null) throw new IOException("Respuesta sin " + RECEIVED_HEADER);
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Valor inválido de " + RECEIVED_HEADER + ": " + value);
+        }
+    }
+
+    /**
+     * Cuenta los bytes que salen por la red y, si hay límite, los espacia para no superarlo
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private final long bytesPerSecond;
+        private final long startNanos = System.nanoTime();
+        long count = 0;
+
+        CountingOutputStream(OutputStream out, long bytesPerSecond) {
+            super(out);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+            throttle();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+            throttle();
+        }
+
+        private void throttle() throws IOException {
+            if (bytesPerSecond <= 0) return;
+            long expectedNanos = count * 1_000_000_000L / bytesPerSecond;
+            long aheadMs = (expectedNanos - (System.nanoTime() - startNanos)) / 1_000_000;
+            if (aheadMs <= 0) return;
+            try {
+                Thread.sleep(aheadMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Envío interrumpido", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.drateor.diabeticscan;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.flir.thermalsdk.androidsdk.ThermalSdkAndroid;
+import com.flir.thermalsdk.log.ThermalLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Orquesta el arranque de la aplicación.
+ * Inicializa el SDK térmico y descubre y carga el modelo TFLite activo en paralelo, en hilos
+ * de fondo, y avisa en el hilo principal cuando cada parte está lista o falló.
+ */
+public class StartupOrchestrator {
+
+    /**
+     * Aviso, en el hilo principal, de que una parte del arranque terminó
+     */
+    public interface Listener {
+        /**
+         * @param error causa si la parte falló, o null si quedó lista
+         */
+        void onSettled(@Nullable Throwable error);
+    }
+
+    private static final String TAG = "StartupOrchestrator";
+    static final String DEFAULT_MODEL_ID = "modelo";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, new StartupThreadFactory());
+
+    private final ModelRegistry modelRegistry;
+    private final CountDownLatch modelLatch = new CountDownLatch(1);
+    private final List<Listener> sdkWaiters = new ArrayList<>();
+    private final List<Listener> modelWaiters = new ArrayList<>();
+
+    private boolean started = false;
+    private boolean sdkSettled = false;
+    private Throwable sdkError;
+    private boolean modelSettled = false;
+    private IOException modelError;
+
+    public StartupOrchestrator(ModelRegistry modelRegistry) {
+        this.modelRegistry = modelRegistry;
+    }
+
+    /**
+     * Lanza la inicialización en segundo plano. Llamar una sola vez desde Application.onCreate
+     */
+    public synchronized void start(Context context) {
+        if (started) return;
+        started = true;
+
+        final Context appContext = context.getApplicationContext();
+        final long startMs = SystemClock.uptimeMillis();
+
+        executor.execute(() -> {
+            Trace.beginSection("DiabeticScan:sdkInit");
+            Throwable error = null;
+            try {
+                ThermalSdkAndroid.init(appContext, sdkLogLevel(appContext));
+            } catch (RuntimeException | LinkageError e) {
+                // Por ejemplo, la biblioteca nativa no carga en este dispositivo
+                error = e;
+                Log.e(TAG, "No se pudo inicializar el SDK térmico", e);
+            } finally {
+                Trace.endSection();
+            }
+            Log.d(TAG, "SDK térmico " + (error == null ? "listo" : "falló") + " en " + (SystemClock.uptimeMillis() - startMs) + " ms");
+            markSdkSettled(error);
+        });
+
+        executor.execute(() -> {
+            Trace.beginSection("DiabeticScan:modelMap");
+            IOException error = null;
+            try {
+                modelRegistry.discover(appContext);
+                List<String> ids = modelRegistry.getModelIds();
+                if (ids.isEmpty()) throw new IOException("No hay modelos instalados");
+                modelRegistry.setActive(ids.contains(DEFAULT_MODEL_ID) ? DEFAULT_MODEL_ID : ids.get(0));
+            } catch (IOException e) {
+                error = e;
+                Log.e(TAG, "No se pudo mapear el modelo", e);
+            } catch (RuntimeException e) {
+                error = new IOException("No se pudo cargar el modelo: " + e.getMessage(), e);
+                Log.e(TAG, "No se pudo cargar el modelo", e);
+            } finally {
+                Trace.endSection();
+            }
+            Log.d(TAG, "Modelo mapeado en " + (SystemClock.uptimeMillis() - startMs) + " ms");
+            markModelSettled(error);
+        });
+
+        executor.shutdown();
+    }
+
+    /**
+     * Avisa en el hilo principal cuando termine la inicialización del SDK, con el error si falló
+     */
+    public void whenSdkReady(Listener listener) {
+        Throwable error;
+        synchronized (this) {
+            if (!sdkSettled) {
+                sdkWaiters.add(listener);
+                return;
+            }
+            error = sdkError;
+        }
+        mainHandler.post(() -> listener.onSettled(error));
+    }
+
+    /**
+     * Avisa en el hilo principal cuando termine el mapeo del modelo, con el error si falló
+     */
+    public void whenModelSettled(Listener listener) {
+        Throwable error;
+        synchronized (this) {
+            if (!modelSettled) {
+                modelWaiters.add(listener);
+                return;
+            }
+            error = modelError;
+        }
+        mainHandler.post(() -> listener.onSettled(error));
+    }
+
+    /**
+     * true si el SDK se inicializó sin errores
+     */
+    public synchronized boolean isSdkReady() {
+        return sdkSettled && sdkError == null;
+    }
+
+    public synchronized boolean isModelSettled() {
+        return modelSettled;
+    }
+
+    /**
+     * Devuelve el registro con el modelo activo ya cargado, esperando a que termine la carga si aún está en curso
+     */
+    public ModelRegistry awaitModels() throws IOException {
+        try {
+            modelLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido esperando el modelo", e);
+        }
+        synchronized (this) {
+            if (modelError != null) throw modelError;
+            return modelRegistry;
+        }
+    }
+
+    /**
+     * Registra el tiempo hasta interactivo desde el inicio del proceso
+     */
+    public static void traceTimeToInteractive(String where) {
+        long elapsed = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+        Log.i(TAG, "Interactivo (" + where + ") en " + elapsed + " ms desde el inicio del proceso");
+    }
+
+    private static ThermalLog.LogLevel sdkLogLevel(Context context) {
+        boolean debuggable = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        return debuggable ? ThermalLog.LogLevel.DEBUG : ThermalLog.LogLevel.NONE;
+    }
+
+    private void markSdkSettled(Throwable error) {
+        List<Listener> waiters;
+        synchronized (this) {
+            sdkError = error;
+            sdkSettled = true;
+            waiters = new ArrayList<>(sdkWaiters);
+            sdkWaiters.clear();
+        }
+        for (Listener waiter : waiters) mainHandler.post(() -> waiter.onSettled(error));
+    }
+
+    private void markModelSettled(IOException error) {
+        List<Listener> waiters;
+        synchronized (this) {
+            modelError = error;
+            modelSettled = true;
+            waiters = new ArrayList<>(modelWaiters);
+            modelWaiters.clear();
+        }
+        modelLatch.countDown();
+        for (Listener waiter : waiters) mainHandler.post(() -> waiter.onSettled(error));
+    }
+
+    private static class StartupThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "startup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
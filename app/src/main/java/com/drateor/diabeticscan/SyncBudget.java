@@ -0,0 +1,142 @@
+package com.drateor.diabeticscan;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Presupuesto de datos y batería de la sincronización.
+ *
+ * Con el equipo cargando se envía sin límite de velocidad; a batería solo si queda carga
+ * suficiente y a una velocidad limitada. Nunca sobre redes medidas salvo que se permita, y nunca
+ * más de un tope de bytes por día, contados en el cable (ya comprimidos). El consumo del día se
+ * guarda en un archivo para que sobreviva a reinicios del proceso.
+ */
+class SyncBudget {
+
+    /**
+     * Estado de energía y red, provisto por la plataforma (o por la prueba)
+     */
+    interface PowerState {
+        boolean isCharging();
+
+        int batteryPercent();
+
+        boolean isNetworkMetered();
+    }
+
+    interface Clock {
+        long currentTimeMillis();
+    }
+
+    private final File stateFile;
+    private final PowerState power;
+    private final Clock clock;
+    private final long dailyBytes;
+    private final int minBatteryPercent;
+    private final long batteryBytesPerSecond;
+    private final boolean allowMetered;
+
+    private long day = -1;
+    private long bytesToday = 0;
+
+    /**
+     * 200 MB por día, 30 % de batería mínima y 512 KB/s a batería, sin redes medidas
+     */
+    SyncBudget(File stateFile, PowerState power) {
+        this(stateFile, power, System::currentTimeMillis, 200L << 20, 30, 512L << 10, false);
+    }
+
+    SyncBudget(File stateFile, PowerState power, Clock clock, long dailyBytes, int minBatteryPercent,
+               long batteryBytesPerSecond, boolean allowMetered) {
+        this.stateFile = stateFile;
+        this.power = power;
+        this.clock = clock;
+        this.dailyBytes = dailyBytes;
+        this.minBatteryPercent = minBatteryPercent;
+        this.batteryBytesPerSecond = batteryBytesPerSecond;
+        this.allowMetered = allowMetered;
+    }
+
+    /**
+     * Motivo por el que hoy no se puede enviar, o null si hay presupuesto
+     */
+    synchronized String blockedReason() {
+        if (!allowMetered && power.isNetworkMetered()) return "Red medida";
+        if (!power.isCharging() && power.batteryPercent() < minBatteryPercent) return "Batería baja";
+        if (bytesToday() >= dailyBytes) return "Cupo diario agotado";
+        return null;
+    }
+
+    /**
+     * Bytes que quedan del cupo de hoy
+     */
+    synchronized long remainingBytes() {
+        return Math.max(0, dailyBytes - bytesToday());
+    }
+
+    /**
+     * Si un lote de ese tamaño entra en lo que queda del cupo. Una captura más grande que el cupo
+     * entero solo se envía como primer envío del día, para que no quede trabada para siempre.
+     */
+    synchronized boolean fits(long bytes) {
+        long sent = bytesToday();
+        return sent == 0 || sent + bytes <= dailyBytes;
+    }
+
+    /**
+     * Velocidad máxima de envío en bytes por segundo, o 0 sin límite
+     */
+    long bytesPerSecond() {
+        return power.isCharging() ? 0 : batteryBytesPerSecond;
+    }
+
+    /**
+     * Suma bytes enviados al consumo del día. El estado se escribe aparte y se renombra, así un
+     * corte a mitad de escritura no borra el consumo ya registrado.
+     */
+    synchronized void record(long bytes) {
+        bytesToday();
+        bytesToday += bytes;
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp);
+             Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8)) {
+            writer.write(day + " " + bytesToday + "\n");
+            writer.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            // Sin persistencia el cupo se cuenta solo en memoria hasta el próximo reinicio
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(stateFile)) tmp.delete();
+    }
+
+    synchronized long bytesToday() {
+        long today = TimeUnit.MILLISECONDS.toDays(clock.currentTimeMillis());
+        if (day < 0) load();
+        if (day != today) {
+            day = today;
+            bytesToday = 0;
+        }
+        return bytesToday;
+    }
+
+    private void load() {
+        if (!stateFile.isFile()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(stateFile))) {
+            String[] parts = reader.readLine().trim().split(" ");
+            day = Long.parseLong(parts[0]);
+            bytesToday = Long.parseLong(parts[1]);
+        } catch (IOException | RuntimeException e) {
+            day = -1;
+            bytesToday = 0;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.drateor.diabeticscan;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generador sintético de frames térmicos: dos plantas de pie tibias sobre un fondo frío,
+ * con ruido de sensor y una deriva lenta. Permite ejercitar el pipeline sin cámara.
+ * No reserva memoria por frame.
+ */
+class SyntheticFrameSource implements FrameSource {
+
+    private static final double BACKGROUND_CELSIUS = 22.0;
+    private static final double FOOT_CELSIUS = 31.0;
+    private static final double HOTSPOT_CELSIUS = 34.5;
+    private static final int NOISE_CENTI_KELVIN = 8;
+
+    private final int width;
+    private final int height;
+    private final double fps;
+    private final short[] base;
+    private final ThermalFrame frame;
+
+    private ScheduledExecutorService scheduler;
+    private Thread freeRunThread;
+    private volatile boolean streaming = false;
+    private int seed = 0x2545F491;
+    private long frameNumber = 0;
+
+    /**
+     * @param fps frames por segundo; 0 o negativo genera tan rápido como el consumidor lo permita
+     */
+    SyntheticFrameSource(int width, int height, double fps) {
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        this.base = buildScene(width, height);
+        this.frame = new ThermalFrame(width, height);
+    }
+
+    @Override
+    public synchronized void start(Callback callback) {
+        if (streaming) return;
+        streaming = true;
+
+        Runnable tick = () -> {
+            if (!streaming) return;
+            try {
+                nextFrame();
+                callback.onFrame(frame);
+            } catch (RuntimeException e) {
+                callback.onError(String.valueOf(e));
+            }
+        };
+
+        if (fps > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "synthetic-source"));
+            scheduler.scheduleAtFixedRate(tick, 0, (long) (1_000_000_000L / fps), TimeUnit.NANOSECONDS);
+        } else {
+            freeRunThread = new Thread(() -> {
+                while (streaming) tick.run();
+            }, "synthetic-source");
+            freeRunThread.start();
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        streaming = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            awaitQuietly(scheduler);
+            scheduler = null;
+        }
+        if (freeRunThread != null) {
+            try {
+                freeRunThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            freeRunThread = null;
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Genera el siguiente frame en el hilo que llama, sin arrancar la fuente (pruebas deterministas).
+     * El frame se reutiliza en la siguiente llamada.
+     */
+    ThermalFrame next() {
+        nextFrame();
+        return frame;
+    }
+
+    private void nextFrame() {
+        // Deriva lenta de ±0.3 °C para que los frames no sean idénticos
+        int drift = (int) (30 * Math.sin(frameNumber++ / 50.0));
+        short[] raw = frame.raw;
+        int s = seed;
+        for (int i = 0; i < raw.length; i++) {
+            s ^= s << 13;
+            s ^= s >>> 17;
+            s ^= s << 5;
+            int noise = (s & 0xFF) * NOISE_CENTI_KELVIN / 255 - NOISE_CENTI_KELVIN / 2;
+            raw[i] = (short) ((base[i] & 0xFFFF) + drift + noise);
+        }
+        seed = s;
+        frame.timestampNanos = System.nanoTime();
+    }
+
+    private static short[] buildScene(int width, int height) {
+        short[] scene = new short[width * height];
+        double footRx = width * 0.14;
+        double footRy = height * 0.38;
+        double[] centersX = {width * 0.32, width * 0.68};
+        double centerY = height * 0.5;
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double celsius = BACKGROUND_CELSIUS;
+                for (double cx : centersX) {
+                    double dx = (x - cx) / footRx;
+                    double dy = (y - centerY) / footRy;
+                    double d = dx * dx + dy * dy;
+                    if (d <= 1.0) {
+                        // Más tibio hacia el centro de la planta
+                        celsius = FOOT_CELSIUS + (HOTSPOT_CELSIUS - FOOT_CELSIUS) * (1.0 - d);
+                    }
+                }
+                scene[y * width + x] = ThermalFrame.toRaw(celsius);
+            }
+        }
+        return scene;
+    }
+
+    private static void awaitQuietly(ScheduledExecutorService executor) {
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.drateor.diabeticscan;
+
+/**
+ * Frame radiométrico crudo.
+ * Guarda cada temperatura como un entero de 16 bits sin signo en centésimas de Kelvin
+ * (0 a 655.35 K), que cubre cualquier escena clínica con 0.01 °C de resolución.
+ */
+class ThermalFrame {
+
+    static final double KELVIN_OFFSET = 273.15;
+
+    final int width;
+    final int height;
+    final short[] raw;
+    long timestampNanos;
+
+    /**
+     * Imagen ARGB coloreada por el SDK de la cámara para este frame (arcoíris, autoescala), si la
+     * fuente la entrega. Es la que reciben las capturas y la inferencia, igual que antes del
+     * pipeline propio; solo vale si {@link #hasReference}.
+     */
+    int[] referenceArgb;
+    boolean hasReference = false;
+
+    ThermalFrame(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.raw = new short[width * height];
+    }
+
+    /**
+     * Llena el frame con temperaturas en °C tal como las entrega el SDK
+     */
+    void fillFromCelsius(double[] celsius, long timestampNanos) {
+        int count = Math.min(celsius.length, raw.length);
+        for (int i = 0; i < count; i++) {
+            raw[i] = toRaw(celsius[i]);
+        }
+        this.timestampNanos = timestampNanos;
+    }
+
+    void copyFrom(ThermalFrame other) {
+        System.arraycopy(other.raw, 0, raw, 0, raw.length);
+        timestampNanos = other.timestampNanos;
+        hasReference = other.hasReference;
+        if (hasReference) {
+            if (referenceArgb == null || referenceArgb.length != other.referenceArgb.length) {
+                referenceArgb = new int[other.referenceArgb.length];
+            }
+            System.arraycopy(other.referenceArgb, 0, referenceArgb, 0, referenceArgb.length);
+        }
+    }
+
+    boolean sameSize(ThermalFrame other) {
+        return other != null && other.width == width && other.height == height;
+    }
+
+    float celsiusAt(int index) {
+        return toCelsius(raw[index]);
+    }
+
+    static short toRaw(double celsius) {
+        long value = Math.round((celsius + KELVIN_OFFSET) * 100.0);
+        if (value < 0) value = 0;
+        if (value > 0xFFFF) value = 0xFFFF;
+        return (short) value;
+    }
+
+    static float toCelsius(short raw) {
+        return (float) ((raw & 0xFFFF) / 100.0 - KELVIN_OFFSET);
+    }
+}
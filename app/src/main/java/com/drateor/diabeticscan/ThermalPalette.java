@@ -0,0 +1,113 @@
+package com.drateor.diabeticscan;
+
+/**
+ * Paletas térmicas de la vista previa, con los nombres y el orden de
+ * PaletteManager.getDefaultPalettes() del SDK FLIR. Los colores son aproximaciones propias,
+ * no reproducen las paletas del SDK.
+ * Cada paleta se define por puntos de color y se expande a una LUT de tamaño fijo.
+ */
+enum ThermalPalette {
+
+    IRON("Iron", even(0x000000, 0x20008C, 0x9B0FA0, 0xE0441E, 0xF89A00, 0xFFE33B, 0xFFFFFF)),
+    ARCTIC("Arctic", even(0x0B0C3C, 0x1F4FB0, 0x3FB0E0, 0xB0E0F0, 0xF0A030, 0xFFE060, 0xFFFFFF)),
+    BLACKHOT("Black hot", even(0xFFFFFF, 0x000000)),
+    BW("Gris", even(0x000000, 0x808080, 0xFFFFFF)),
+    COLDEST("Coldest", stops(new float[]{0f, 0.1f, 0.1f, 1f},
+            new int[]{0x0000FF, 0x00A0FF, 0x303030, 0xFFFFFF})),
+    WHEEL_REDHOT("Wheel red hot", even(0x8000FF, 0x0000FF, 0x00FFFF, 0x00FF00, 0xFFFF00, 0xFF8000, 0xFF0000)),
+    COLORWHEEL6("Color wheel 6", bands(0x0000FF, 0x00FFFF, 0x00FF00, 0xFFFF00, 0xFF8000, 0xFF0000)),
+    COLORWHEEL12("Color wheel 12", bands(0x400080, 0x0000FF, 0x0080FF, 0x00FFFF, 0x00FF80, 0x00FF00,
+            0x80FF00, 0xFFFF00, 0xFFC000, 0xFF8000, 0xFF4000, 0xFF0000)),
+    DOUBLERAINBOW2("Double rainbow", even(0x0000FF, 0x00FFFF, 0x00FF00, 0xFFFF00, 0xFF0000,
+            0x0000FF, 0x00FFFF, 0x00FF00, 0xFFFF00, 0xFF0000)),
+    LAVA("Lava", even(0x000000, 0x1A2F6E, 0x2A7F8F, 0x7A3060, 0xE04000, 0xFFC000, 0xFFFFFF)),
+    RAINBOW("Rainbow", even(0x0000FF, 0x00FFFF, 0x00FF00, 0xFFFF00, 0xFF0000)),
+    RAINHC("Rainbow HC", even(0x000000, 0x0000FF, 0x00FFFF, 0x00FF00, 0xFFFF00, 0xFF0000, 0xFFFFFF)),
+    WHITEHOT("White hot", even(0x000000, 0xFFFFFF)),
+    HOTTEST("Hottest", stops(new float[]{0f, 0.9f, 0.9f, 1f},
+            new int[]{0x000000, 0xD0D0D0, 0xFF0000, 0xFFFF00}));
+
+    final String displayName;
+    private final float[] positions;
+    private final int[] colors;
+
+    ThermalPalette(String displayName, Stops stops) {
+        this.displayName = displayName;
+        this.positions = stops.positions;
+        this.colors = stops.colors;
+    }
+
+    /**
+     * Siguiente paleta, para recorrerlas en la interfaz
+     */
+    ThermalPalette next() {
+        ThermalPalette[] all = values();
+        return all[(ordinal() + 1) % all.length];
+    }
+
+    /**
+     * Expande la paleta a {@code size} colores ARGB opacos, de frío a caliente
+     */
+    int[] buildLut(int size) {
+        int[] lut = new int[size];
+        int segment = 0;
+        for (int i = 0; i < size; i++) {
+            float t = size == 1 ? 0f : i / (float) (size - 1);
+            while (segment < positions.length - 2 && t > positions[segment + 1]) segment++;
+
+            float start = positions[segment];
+            float end = positions[segment + 1];
+            float f = end > start ? (t - start) / (end - start) : 1f;
+            f = Math.max(0f, Math.min(1f, f));
+            lut[i] = 0xFF000000 | lerp(colors[segment], colors[segment + 1], f);
+        }
+        return lut;
+    }
+
+    private static int lerp(int from, int to, float f) {
+        int r = (int) (((from >> 16) & 0xFF) + (((to >> 16) & 0xFF) - ((from >> 16) & 0xFF)) * f);
+        int g = (int) (((from >> 8) & 0xFF) + (((to >> 8) & 0xFF) - ((from >> 8) & 0xFF)) * f);
+        int b = (int) ((from & 0xFF) + ((to & 0xFF) - (from & 0xFF)) * f);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static Stops stops(float[] positions, int[] colors) {
+        return new Stops(positions, colors);
+    }
+
+    /**
+     * Puntos de color equiespaciados con transición continua
+     */
+    private static Stops even(int... colors) {
+        float[] positions = new float[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            positions[i] = i / (float) (colors.length - 1);
+        }
+        return new Stops(positions, colors);
+    }
+
+    /**
+     * Bandas de color sólido de igual ancho
+     */
+    private static Stops bands(int... colors) {
+        float[] positions = new float[colors.length * 2];
+        int[] doubled = new int[colors.length * 2];
+        for (int i = 0; i < colors.length; i++) {
+            positions[2 * i] = i / (float) colors.length;
+            positions[2 * i + 1] = (i + 1) / (float) colors.length;
+            doubled[2 * i] = colors[i];
+            doubled[2 * i + 1] = colors[i];
+        }
+        return new Stops(positions, doubled);
+    }
+
+    private static class Stops {
+        final float[] positions;
+        final int[] colors;
+
+        Stops(float[] positions, int[] colors) {
+            this.positions = positions;
+            this.colors = colors;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.drateor.diabeticscan;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vista previa del stream térmico dibujada directamente sobre una superficie.
+ *
+ * Los frames llegan desde el hilo del pipeline ({@link #submitFrame}) y se copian a un buffer
+ * propio; un hilo de render los dibuja al ritmo del refresco de la pantalla (Choreographer),
+ * siempre el más reciente. Si llegan varios entre dos refrescos, los intermedios se descartan.
+ * El hilo principal no interviene en ningún frame: no hay invalidate, ni medida, ni setImageBitmap.
+ * Escala como centerCrop.
+ */
+public class ThermalPreviewView extends SurfaceView implements SurfaceHolder.Callback {
+
+    private final Object lock = new Object();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final AtomicLong framesDrawn = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+
+    // Protegidos por lock: frame pendiente, buffer libre y estado del hilo de render
+    private int[] pending;
+    private int pendingWidth;
+    private int pendingHeight;
+    private int[] spare;
+    private Handler renderHandler;
+    private boolean frameRequested = false;
+
+    // Solo en el hilo de render
+    private HandlerThread renderThread;
+    private Choreographer choreographer;
+    private Bitmap frameBitmap;
+    private int[] rendering;
+    private int surfaceWidth;
+    private int surfaceHeight;
+    private final Rect source = new Rect();
+    private final RectF destination = new RectF();
+
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> drawPending();
+
+    public ThermalPreviewView(Context context) {
+        this(context, null);
+    }
+
+    public ThermalPreviewView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Entrega un frame ARGB para mostrar. Se puede llamar desde cualquier hilo; el arreglo se copia
+     * y queda libre al volver.
+     */
+    public void submitFrame(int[] argb, int width, int height) {
+        int[] buffer;
+        synchronized (lock) {
+            buffer = spare != null && spare.length == argb.length ? spare : null;
+            spare = null;
+        }
+        if (buffer == null) buffer = new int[argb.length];
+        System.arraycopy(argb, 0, buffer, 0, argb.length);
+
+        synchronized (lock) {
+            if (pending != null) {
+                // El frame anterior no llegó a dibujarse: su buffer se reutiliza
+                framesDropped.incrementAndGet();
+                spare = pending;
+            }
+            pending = buffer;
+            pendingWidth = width;
+            pendingHeight = height;
+            requestFrameLocked();
+        }
+    }
+
+    public long getFramesDrawn() {
+        return framesDrawn.get();
+    }
+
+    /**
+     * Frames reemplazados por otro más nuevo antes del siguiente refresco de pantalla
+     */
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        renderThread = new HandlerThread("thermal-preview", Process.THREAD_PRIORITY_DISPLAY);
+        renderThread.start();
+        Handler handler = new Handler(renderThread.getLooper());
+        handler.post(() -> choreographer = Choreographer.getInstance());
+        synchronized (lock) {
+            renderHandler = handler;
+            frameRequested = false;
+            // Lo último que llegó antes de tener superficie se muestra enseguida
+            if (pending != null) requestFrameLocked();
+        }
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        Handler handler;
+        synchronized (lock) {
+            handler = renderHandler;
+        }
+        if (handler == null) return;
+        handler.post(() -> {
+            surfaceWidth = width;
+            surfaceHeight = height;
+            updateDestination();
+            // El último frame se vuelve a dibujar con el tamaño nuevo
+            if (frameBitmap != null) draw(getHolder());
+        });
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        Handler handler;
+        synchronized (lock) {
+            handler = renderHandler;
+            renderHandler = null;
+        }
+        if (handler == null) return;
+
+        // La superficie deja de ser válida al volver: esperar a que el render suelte el canvas
+        CountDownLatch stopped = new CountDownLatch(1);
+        handler.post(() -> {
+            if (choreographer != null) choreographer.removeFrameCallback(frameCallback);
+            stopped.countDown();
+        });
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        renderThread.quitSafely();
+        renderThread = null;
+    }
+
+    private void requestFrameLocked() {
+        if (frameRequested || renderHandler == null) return;
+        frameRequested = true;
+        renderHandler.post(() -> choreographer.postFrameCallback(frameCallback));
+    }
+
+    /**
+     * En el hilo de render, en cada refresco con un frame nuevo
+     */
+    private void drawPending() {
+        int[] frame;
+        int width;
+        int height;
+        synchronized (lock) {
+            frameRequested = false;
+            frame = pending;
+            width = pendingWidth;
+            height = pendingHeight;
+            pending = null;
+            if (frame == null) return;
+            // El buffer del frame anterior pasa a estar libre para el productor
+            if (rendering != null && spare == null) spare = rendering;
+        }
+        rendering = frame;
+
+        if (frameBitmap == null || frameBitmap.getWidth() != width || frameBitmap.getHeight() != height) {
+            frameBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            updateDestination();
+        }
+        frameBitmap.setPixels(frame, 0, width, 0, 0, width, height);
+        draw(getHolder());
+        framesDrawn.incrementAndGet();
+
+        synchronized (lock) {
+            // Llegó otro frame mientras se dibujaba: pedir el siguiente refresco
+            if (pending != null) requestFrameLocked();
+        }
+    }
+
+    private void draw(SurfaceHolder holder) {
+        if (!holder.getSurface().isValid()) return;
+        Canvas canvas = holder.lockHardwareCanvas();
+        if (canvas == null) return;
+        try {
+            canvas.drawColor(Color.BLACK);
+            canvas.drawBitmap(frameBitmap, source, destination, paint);
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+    }
+
+    /**
+     * Escala como centerCrop: cubre toda la superficie y recorta lo que sobra, centrado
+     */
+    private void updateDestination() {
+        if (frameBitmap == null || surfaceWidth == 0 || surfaceHeight == 0) return;
+        int width = frameBitmap.getWidth();
+        int height = frameBitmap.getHeight();
+        source.set(0, 0, width, height);
+        float scale = Math.max(surfaceWidth / (float) width, surfaceHeight / (float) height);
+        float scaledWidth = width * scale;
+        float scaledHeight = height * scale;
+        float left = (surfaceWidth - scaledWidth) / 2f;
+        float top = (surfaceHeight - scaledHeight) / 2f;
+        destination.set(left, top, left + scaledWidth, top + scaledHeight);
+    }
+}
@@ -0,0 +1,97 @@
+package com.drateor.diabeticscan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Percentiles, suavizado e histéresis de {@link AutoRangeEstimator}
+ */
+public class AutoRangeEstimatorTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 100;
+
+    /**
+     * Ancho de una cubeta del histograma (140 °C en 1024 cubetas), más redondeo
+     */
+    private static final int BUCKET_RAW = 15;
+
+    @Test
+    public void percentilesIgnoreOutliers() {
+        AutoRangeEstimator estimator = new AutoRangeEstimator(1f, 99f, 1f, 0f);
+        ThermalFrame frame = gradient(20.0, 40.0);
+        // 0.5 % de píxeles muy fríos y muy calientes, repartidos por todas las columnas
+        for (int i = 0; i + 98 < frame.raw.length; i += 197) {
+            frame.raw[i] = ThermalFrame.toRaw(-10.0);
+            frame.raw[i + 98] = ThermalFrame.toRaw(110.0);
+        }
+
+        estimator.update(frame);
+
+        assertNear(20.0, estimator.getMinRaw());
+        assertNear(40.0, estimator.getMaxRaw());
+    }
+
+    @Test
+    public void exponentialAverageMovesPartWay() {
+        AutoRangeEstimator estimator = new AutoRangeEstimator(0f, 100f, 0.5f, 0f);
+        estimator.update(gradient(20.0, 40.0));
+        estimator.update(gradient(30.0, 50.0));
+
+        assertNear(25.0, estimator.getMinRaw());
+        assertNear(45.0, estimator.getMaxRaw());
+    }
+
+    @Test
+    public void hysteresisHoldsSmallChanges() {
+        AutoRangeEstimator estimator = new AutoRangeEstimator();
+        estimator.update(gradient(20.0, 40.0));
+        int min = estimator.getMinRaw();
+        int max = estimator.getMaxRaw();
+
+        for (int i = 0; i < 30; i++) estimator.update(gradient(20.2, 40.2));
+        assertEquals(min, estimator.getMinRaw());
+        assertEquals(max, estimator.getMaxRaw());
+
+        // Un cambio mayor sí se sigue, hasta quedar a menos de la histéresis (0.3 °C)
+        for (int i = 0; i < 30; i++) estimator.update(gradient(22.0, 42.0));
+        assertTrue(estimator.getMinRaw() - min >= 150);
+        assertTrue(estimator.getMaxRaw() - max >= 150);
+
+        // Tras reset el próximo frame se toma tal cual, sin suavizado
+        estimator.reset();
+        estimator.update(gradient(10.0, 20.0));
+        assertNear(10.0, estimator.getMinRaw());
+        assertNear(20.0, estimator.getMaxRaw());
+    }
+
+    @Test
+    public void uniformSceneKeepsMinimumSpanWithHysteresis() {
+        AutoRangeEstimator estimator = new AutoRangeEstimator();
+        estimator.update(gradient(30.0, 30.0));
+        int min = estimator.getMinRaw();
+        int max = estimator.getMaxRaw();
+        assertEquals(100, max - min, 1);
+
+        // Una deriva menor que la histéresis no recentra el rango ampliado
+        for (int i = 0; i < 30; i++) estimator.update(gradient(30.2, 30.2));
+        assertEquals(min, estimator.getMinRaw());
+        assertEquals(max, estimator.getMaxRaw());
+    }
+
+    private static ThermalFrame gradient(double fromCelsius, double toCelsius) {
+        ThermalFrame frame = new ThermalFrame(WIDTH, HEIGHT);
+        for (int i = 0; i < frame.raw.length; i++) {
+            double t = (i % WIDTH) / (double) (WIDTH - 1);
+            frame.raw[i] = ThermalFrame.toRaw(fromCelsius + t * (toCelsius - fromCelsius));
+        }
+        return frame;
+    }
+
+    private static void assertNear(double expectedCelsius, int actualRaw) {
+        int expectedRaw = ThermalFrame.toRaw(expectedCelsius) & 0xFFFF;
+        assertTrue("Esperado " + expectedCelsius + " °C, obtenido " + ThermalFrame.toCelsius((short) actualRaw) + " °C",
+                Math.abs(actualRaw - expectedRaw) <= BUCKET_RAW);
+    }
+}
@@ -0,0 +1,83 @@
+package com.drateor.diabeticscan;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tolerancias media y máxima de {@link FrameChangeDetector} y el frame forzado tras muchos saltos
+ */
+public class FrameChangeDetectorTest {
+
+    private static final int PLANE_SIZE = FrameQualityGate.PLANE_WIDTH * FrameQualityGate.PLANE_HEIGHT;
+    private static final int BASE_RAW = 30315;
+
+    private final FrameChangeDetector detector = new FrameChangeDetector();
+
+    @Test
+    public void meanToleranceAccumulatesSlowDrift() {
+        assertTrue("El primer frame siempre se procesa", detector.hasChanged(plane(0)));
+        assertFalse(detector.hasChanged(plane(0)));
+
+        // 0.04 °C en todo el plano queda bajo la tolerancia media de 0.05 °C
+        assertFalse(detector.hasChanged(plane(4)));
+        // La referencia es el último frame procesado: la deriva se acumula hasta superarla
+        assertTrue(detector.hasChanged(plane(6)));
+        assertFalse(detector.hasChanged(plane(10)));
+        assertTrue(detector.hasChanged(plane(12)));
+    }
+
+    @Test
+    public void maxToleranceCatchesLocalizedChange() {
+        assertTrue(detector.hasChanged(plane(0)));
+
+        // Un solo punto casi no mueve la media, pero más de 0.3 °C cuenta como cambio
+        int[] spot = plane(0);
+        spot[PLANE_SIZE / 2] += 30;
+        assertFalse(detector.hasChanged(spot));
+        spot[PLANE_SIZE / 2] += 1;
+        assertTrue(detector.hasChanged(spot));
+    }
+
+    @Test
+    public void forcesFrameAfterConsecutiveSkips() {
+        assertTrue(detector.hasChanged(plane(0)));
+        for (int i = 0; i < 30; i++) {
+            assertFalse("salto " + (i + 1), detector.hasChanged(plane(0)));
+        }
+        assertTrue("Tras 30 saltos se fuerza un frame", detector.hasChanged(plane(0)));
+        assertFalse(detector.hasChanged(plane(0)));
+
+        // invalidate() fuerza el siguiente sin esperar
+        detector.invalidate();
+        assertTrue(detector.hasChanged(plane(0)));
+    }
+
+    @Test
+    public void skipRateCountsUnchangedFrames() {
+        FramePipeline pipeline = new FramePipeline();
+        SyntheticFrameSource scene = new SyntheticFrameSource(160, 120, 0);
+        ThermalFrame frame = scene.next();
+        pipeline.start();
+        try {
+            // El mismo frame diez veces: se procesa el primero y se saltan los demás
+            for (int i = 0; i < 10; i++) pipeline.process(frame);
+        } finally {
+            pipeline.stop();
+        }
+
+        PipelineStats stats = pipeline.getStats();
+        assertEquals(10, stats.framesIn.get());
+        assertEquals(9, stats.framesUnchanged.get());
+        assertEquals(0.9, stats.getSkipRate(), 1e-9);
+        assertTrue(stats.summary(), stats.summary().contains("90% sin cambios"));
+    }
+
+    private static int[] plane(int offsetRaw) {
+        int[] plane = new int[PLANE_SIZE];
+        Arrays.fill(plane, BASE_RAW + offsetRaw);
+        return plane;
+    }
+}
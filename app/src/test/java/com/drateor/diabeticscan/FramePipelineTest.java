@@ -0,0 +1,168 @@
+package com.drateor.diabeticscan;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Capturas del pipeline con frames entregados uno a uno desde el hilo de la prueba
+ */
+public class FramePipelineTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    private SyntheticFrameSource scene;
+    private FramePipeline pipeline;
+
+    @Before
+    public void setUp() {
+        scene = new SyntheticFrameSource(WIDTH, HEIGHT, 0);
+        pipeline = new FramePipeline();
+        pipeline.start();
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.stop();
+    }
+
+    @Test
+    public void captureUsesPixelsColorizedBySource() {
+        pipeline.setSourceColorizes(true);
+        CaptureResult result = new CaptureResult();
+        pipeline.requestCapture(result);
+        assertTrue(pipeline.wantsReferencePixels());
+
+        // El primer frame todavía no trae la imagen de la fuente: la captura la espera
+        pipeline.process(scene.next());
+        assertNull(result.argb.get());
+
+        ThermalFrame frame = scene.next();
+        frame.referenceArgb = new int[frame.raw.length];
+        Arrays.fill(frame.referenceArgb, 0xFF123456);
+        frame.hasReference = true;
+        pipeline.process(frame);
+
+        assertNotNull(result.argb.get());
+        assertArrayEquals(frame.referenceArgb, result.argb.get());
+        assertFalse(pipeline.wantsReferencePixels());
+    }
+
+    @Test
+    public void newRequestDoesNotInheritWaitOfCancelledOne() {
+        pipeline.setSourceColorizes(true);
+        CaptureResult cancelled = new CaptureResult();
+        pipeline.requestCapture(cancelled);
+        pipeline.process(scene.next());
+        pipeline.process(scene.next());
+        pipeline.cancelCapture();
+
+        // El pedido nuevo vuelve a esperar la imagen de la fuente desde cero
+        CaptureResult result = new CaptureResult();
+        pipeline.requestCapture(result);
+        pipeline.process(scene.next());
+        assertNull(result.argb.get());
+
+        ThermalFrame frame = scene.next();
+        frame.referenceArgb = new int[frame.raw.length];
+        Arrays.fill(frame.referenceArgb, 0xFF654321);
+        frame.hasReference = true;
+        pipeline.process(frame);
+
+        assertArrayEquals(frame.referenceArgb, result.argb.get());
+        assertNull(cancelled.argb.get());
+        assertNull(cancelled.rejection.get());
+    }
+
+    @Test
+    public void captureFallsBackToOwnColorizationWithoutSourcePixels() {
+        pipeline.setSourceColorizes(true);
+        CaptureResult result = new CaptureResult();
+        pipeline.requestCapture(result);
+        for (int i = 0; i < 5 && result.argb.get() == null; i++) pipeline.process(scene.next());
+
+        assertNotNull(result.argb.get());
+        assertEquals(WIDTH * HEIGHT, result.argb.get().length);
+    }
+
+    @Test
+    public void captureIgnoresPreviewPalette() {
+        FramePipeline rainbow = new FramePipeline();
+        rainbow.start();
+        pipeline.setPalette(ThermalPalette.IRON);
+        SyntheticFrameSource sameScene = new SyntheticFrameSource(WIDTH, HEIGHT, 0);
+
+        CaptureResult expected = new CaptureResult();
+        CaptureResult actual = new CaptureResult();
+        rainbow.requestCapture(expected);
+        pipeline.requestCapture(actual);
+        for (int i = 0; i < 5 && actual.argb.get() == null; i++) {
+            rainbow.process(sameScene.next());
+            pipeline.process(scene.next());
+        }
+        rainbow.stop();
+
+        assertNotNull(actual.argb.get());
+        assertArrayEquals(expected.argb.get(), actual.argb.get());
+    }
+
+    @Test
+    public void liveInferenceDoesNotAskSourceForPixels() throws InterruptedException {
+        pipeline.setSourceColorizes(true);
+        CountDownLatch classified = new CountDownLatch(1);
+        AtomicReference<int[]> input = new AtomicReference<>();
+        pipeline.setClassifier((frame, argb) -> {
+            input.set(argb.clone());
+            return "ClaseA";
+        }, 1, result -> classified.countDown());
+
+        // Sin captura pendiente la fuente no colorea: la inferencia usa la LUT propia
+        for (int i = 0; i < 5; i++) {
+            assertFalse(pipeline.wantsReferencePixels());
+            pipeline.process(scene.next());
+        }
+        assertTrue(classified.await(5, TimeUnit.SECONDS));
+        assertEquals(WIDTH * HEIGHT, input.get().length);
+
+        pipeline.requestCapture(new CaptureResult());
+        assertTrue(pipeline.wantsReferencePixels());
+    }
+
+    @Test
+    public void stopRejectsPendingCapture() {
+        CaptureResult result = new CaptureResult();
+        pipeline.requestCapture(result);
+        pipeline.stop();
+
+        assertNotNull(result.rejection.get());
+        assertFalse(pipeline.wantsReferencePixels());
+
+        // Un pedido con el pipeline detenido se rechaza enseguida
+        CaptureResult late = new CaptureResult();
+        pipeline.requestCapture(late);
+        assertNotNull(late.rejection.get());
+    }
+
+    static class CaptureResult implements FramePipeline.CaptureCallback {
+        final AtomicReference<int[]> argb = new AtomicReference<>();
+        final AtomicReference<String> rejection = new AtomicReference<>();
+
+        @Override
+        public void onCaptured(ThermalFrame frame, int[] pixels) {
+            argb.set(pixels);
+        }
+
+        @Override
+        public void onRejected(String reason) {
+            rejection.set(reason);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.drateor.diabeticscan;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Umbrales por defecto de {@link FrameQualityGate} sobre la escena sintética de dos pies
+ */
+public class FrameQualityGateTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    private final FrameQualityGate gate = new FrameQualityGate();
+    private final SyntheticFrameSource scene = new SyntheticFrameSource(WIDTH, HEIGHT, 0);
+
+    @Test
+    public void acceptsSharpStillFoot() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(gate.getRejectionReason(), gate.assess(scene.next()));
+        }
+        assertNull(gate.getRejectionReason());
+        assertTrue(gate.getSharpness() >= 12000f);
+        assertTrue(gate.getMotionCelsius() <= 0.25f);
+        assertTrue(gate.getCoverage() >= 0.15f);
+    }
+
+    @Test
+    public void rejectsBlurredFrame() {
+        // Sin frame anterior no hay movimiento que medir: solo cuenta la nitidez
+        assertFalse(gate.assess(boxBlur(scene.next(), 13)));
+        assertEquals("Imagen borrosa", gate.getRejectionReason());
+        assertTrue(gate.getCoverage() >= 0.15f);
+    }
+
+    @Test
+    public void rejectsShiftedFrame() {
+        assertTrue(gate.getRejectionReason(), gate.assess(scene.next()));
+
+        // El mismo encuadre corrido 8 píxeles, como una cámara que se mueve
+        assertFalse(gate.assess(shift(scene.next(), 8)));
+        assertEquals("Cámara en movimiento", gate.getRejectionReason());
+        assertTrue(gate.getMotionCelsius() > 0.25f);
+
+        // Quieta de nuevo, vuelve a pasar
+        assertTrue(gate.getRejectionReason(), gate.assess(shift(scene.next(), 8)));
+    }
+
+    @Test
+    public void rejectsUniformSceneForCoverage() {
+        ThermalFrame blank = new ThermalFrame(WIDTH, HEIGHT);
+        Arrays.fill(blank.raw, ThermalFrame.toRaw(22.0));
+
+        assertFalse(gate.assess(blank));
+        assertEquals("Pie fuera de encuadre", gate.getRejectionReason());
+        assertEquals(0f, gate.getCoverage(), 0f);
+    }
+
+    /**
+     * Promedio de una ventana cuadrada de lado 2·radio+1, con los bordes recortados
+     */
+    private static ThermalFrame boxBlur(ThermalFrame frame, int radius) {
+        ThermalFrame blurred = new ThermalFrame(frame.width, frame.height);
+        for (int y = 0; y < frame.height; y++) {
+            for (int x = 0; x < frame.width; x++) {
+                long total = 0;
+                int count = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    int yy = y + dy;
+                    if (yy < 0 || yy >= frame.height) continue;
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int xx = x + dx;
+                        if (xx < 0 || xx >= frame.width) continue;
+                        total += frame.raw[yy * frame.width + xx] & 0xFFFF;
+                        count++;
+                    }
+                }
+                blurred.raw[y * frame.width + x] = (short) (total / count);
+            }
+        }
+        return blurred;
+    }
+
+    /**
+     * Corre el frame hacia la derecha, repitiendo la primera columna
+     */
+    private static ThermalFrame shift(ThermalFrame frame, int pixels) {
+        ThermalFrame shifted = new ThermalFrame(frame.width, frame.height);
+        for (int y = 0; y < frame.height; y++) {
+            int row = y * frame.width;
+            for (int x = 0; x < frame.width; x++) {
+                shifted.raw[row + x] = frame.raw[row + Math.max(0, x - pixels)];
+            }
+        }
+        return shifted;
+    }
+}
@@ -0,0 +1,113 @@
+package com.drateor.diabeticscan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bajadas y subidas de nivel de {@link LoadGovernor} con latencias dadas, sin reloj real
+ */
+public class LoadGovernorTest {
+
+    private static final long TARGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(80);
+    private static final long CALM_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long TIGHT_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+
+    private final LoadGovernor governor = new LoadGovernor(TARGET_NANOS);
+
+    @Test
+    public void stepsDownOneLevelPerSlowWindow() {
+        List<LoadGovernor.Level> changes = new ArrayList<>();
+        governor.setListener((level, reason) -> changes.add(level));
+
+        // Una ventana incompleta no decide nada
+        for (int i = 0; i < LoadGovernor.WINDOW_FRAMES - 1; i++) governor.onFrame(0, SLOW_NANOS);
+        assertEquals(LoadGovernor.Level.FULL, governor.getLevel());
+
+        governor.onFrame(0, SLOW_NANOS);
+        assertEquals(LoadGovernor.Level.ALTERNATE_COLORIZE, governor.getLevel());
+
+        for (int i = 0; i < 5; i++) window(SLOW_NANOS);
+        assertEquals(LoadGovernor.Level.LOW_INFERENCE, governor.getLevel());
+        assertEquals(3, changes.size());
+    }
+
+    @Test
+    public void slowOutliersBelowP90DoNotStepDown() {
+        // Dos frames lentos de 30 quedan por encima del percentil 90
+        for (int i = 0; i < LoadGovernor.WINDOW_FRAMES; i++) {
+            governor.onFrame(0, i < 2 ? SLOW_NANOS : CALM_NANOS);
+        }
+        assertEquals(LoadGovernor.Level.FULL, governor.getLevel());
+
+        // Una cola larga baja el nivel aunque la latencia esté bien
+        governor.onFrame(TARGET_NANOS, CALM_NANOS);
+        for (int i = 1; i < LoadGovernor.WINDOW_FRAMES; i++) governor.onFrame(0, CALM_NANOS);
+        assertEquals(LoadGovernor.Level.ALTERNATE_COLORIZE, governor.getLevel());
+    }
+
+    @Test
+    public void stepsUpOnlyAfterConsecutiveCalmWindows() {
+        window(SLOW_NANOS);
+        window(SLOW_NANOS);
+        assertEquals(LoadGovernor.Level.HALF_RESOLUTION, governor.getLevel());
+
+        window(CALM_NANOS);
+        window(CALM_NANOS);
+        // Una ventana sin margen suficiente reinicia la cuenta
+        window(TIGHT_NANOS);
+        window(CALM_NANOS);
+        window(CALM_NANOS);
+        assertEquals(LoadGovernor.Level.HALF_RESOLUTION, governor.getLevel());
+
+        window(CALM_NANOS);
+        assertEquals(LoadGovernor.Level.ALTERNATE_COLORIZE, governor.getLevel());
+        for (int i = 0; i < 3; i++) window(CALM_NANOS);
+        assertEquals(LoadGovernor.Level.FULL, governor.getLevel());
+    }
+
+    @Test
+    public void thermalStatusSetsFloor() {
+        governor.setThermalStatus(LoadGovernor.THERMAL_CRITICAL);
+        assertEquals(LoadGovernor.Level.LOW_INFERENCE, governor.getLevel());
+        for (int i = 0; i < 6; i++) window(CALM_NANOS);
+        assertEquals(LoadGovernor.Level.LOW_INFERENCE, governor.getLevel());
+
+        governor.setThermalStatus(LoadGovernor.THERMAL_MODERATE);
+        assertEquals(LoadGovernor.Level.ALTERNATE_COLORIZE, governor.getLevel());
+
+        // La carga puede bajar más que el piso térmico, y al enfriarse queda el nivel por carga
+        window(SLOW_NANOS);
+        window(SLOW_NANOS);
+        assertEquals(LoadGovernor.Level.HALF_RESOLUTION, governor.getLevel());
+        governor.setThermalStatus(LoadGovernor.THERMAL_NONE);
+        assertEquals(LoadGovernor.Level.HALF_RESOLUTION, governor.getLevel());
+    }
+
+    @Test
+    public void resetRestoresFullQualityAndDropsPartialWindow() {
+        window(SLOW_NANOS);
+        for (int i = 0; i < LoadGovernor.WINDOW_FRAMES - 1; i++) governor.onFrame(0, SLOW_NANOS);
+
+        governor.reset();
+        assertEquals(LoadGovernor.Level.FULL, governor.getLevel());
+
+        // La ventana a medias se descartó: un frame lento más no completa nada
+        governor.onFrame(0, SLOW_NANOS);
+        assertEquals(LoadGovernor.Level.FULL, governor.getLevel());
+
+        // El piso térmico sigue vigente tras el reinicio
+        governor.setThermalStatus(LoadGovernor.THERMAL_SEVERE);
+        governor.reset();
+        assertEquals(LoadGovernor.Level.HALF_RESOLUTION, governor.getLevel());
+    }
+
+    private void window(long endToEndNanos) {
+        for (int i = 0; i < LoadGovernor.WINDOW_FRAMES; i++) governor.onFrame(0, endToEndNanos);
+    }
+}
@@ -0,0 +1,303 @@
+package com.drateor.diabeticscan;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Varias cámaras a la vez con fuentes sintéticas: cada una con su pipeline e hilo
+ * ({@link BufferedFrameSource}) y capturas pareadas alineadas ({@link PairedCapture}).
+ */
+public class MultiCameraTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    private static final long LEFT_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(33);
+    private static final long RIGHT_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(115);
+    private static final long RIGHT_PHASE_NANOS = TimeUnit.MILLISECONDS.toNanos(17);
+
+    private final List<FrameSource> sources = new ArrayList<>();
+    private final List<FramePipeline> pipelines = new ArrayList<>();
+    /**
+     * Primer error de una fuente: llega en su hilo, donde un fail() no haría fallar la prueba
+     */
+    private final AtomicReference<String> sourceError = new AtomicReference<>();
+
+    @After
+    public void tearDown() {
+        for (FrameSource source : sources) source.stop();
+        for (FramePipeline pipeline : pipelines) pipeline.stop();
+        assertNull(sourceError.get(), sourceError.get());
+    }
+
+    @Test
+    public void slowCameraDoesNotStallOthers() throws Exception {
+        // Como el SDK: un solo hilo (aquí, el de la prueba) entrega los frames de las dos cámaras
+        SharedDelivery delivery = new SharedDelivery(2);
+        CountDownLatch slowEntered = new CountDownLatch(1);
+        CountDownLatch slowReleased = new CountDownLatch(1);
+        FramePipeline fast = start(new BufferedFrameSource(delivery.camera(0), "camera-a"), null, null);
+        FramePipeline slow = start(new BufferedFrameSource(delivery.camera(1), "camera-b"), slowEntered, slowReleased);
+        BufferedFrameSource fastSource = (BufferedFrameSource) sources.get(0);
+        BufferedFrameSource slowSource = (BufferedFrameSource) sources.get(1);
+
+        // La cámara lenta queda trabada dibujando su primer frame
+        delivery.tick();
+        assertTrue("La cámara lenta no recibió su primer frame", slowEntered.await(10, TimeUnit.SECONDS));
+        awaitFramesIn(fast, 1);
+
+        int delivered = 30;
+        for (int i = 2; i <= delivered; i++) {
+            delivery.tick();
+            awaitFramesIn(fast, i);
+        }
+
+        // Todas las entregas volvieron con la lenta trabada: el hilo de entrega no la espera
+        assertEquals(1, slow.getStats().framesIn.get());
+        assertEquals(delivered, fast.getStats().framesIn.get());
+        assertEquals(0, fastSource.getFramesDropped());
+        // Solo queda pendiente el más nuevo; los anteriores se descartaron
+        assertEquals(delivered - 2, slowSource.getFramesDropped());
+
+        slowReleased.countDown();
+        awaitFramesIn(slow, 2);
+        assertEquals(delivered - 2, slowSource.getFramesDropped());
+    }
+
+    @Test
+    public void pairedCaptureIsTimeAligned() throws Exception {
+        // Dos cámaras con distinto ritmo y fase, entregadas en orden de tiempo desde la prueba
+        SyntheticFrameSource leftScene = new SyntheticFrameSource(WIDTH, HEIGHT, 0);
+        SyntheticFrameSource rightScene = new SyntheticFrameSource(WIDTH, HEIGHT, 0);
+        FramePipeline left = start(null, null, null);
+        FramePipeline right = start(null, null, null);
+        long origin = System.nanoTime();
+        long nextLeft = origin + LEFT_PERIOD_NANOS;
+        long nextRight = origin + RIGHT_PHASE_NANOS;
+        long now = origin;
+
+        for (int i = 0; i < 5; i++) {
+            Map<String, FramePipeline> cameras = new LinkedHashMap<>();
+            cameras.put("izquierdo", left);
+            cameras.put("derecho", right);
+            long requestedAt = now;
+            AtomicReference<Result> result = request(cameras);
+
+            for (int frames = 0; result.get() == null; frames++) {
+                assertTrue("La captura pareada no terminó", frames < 1000);
+                if (nextLeft <= nextRight) {
+                    now = nextLeft;
+                    nextLeft += LEFT_PERIOD_NANOS;
+                    deliver(left, leftScene.next(), now);
+                } else {
+                    now = nextRight;
+                    nextRight += RIGHT_PERIOD_NANOS;
+                    deliver(right, rightScene.next(), now);
+                }
+            }
+
+            Result captured = result.get();
+            assertNull(captured.rejection, captured.rejection);
+            assertEquals(2, captured.shots.size());
+            assertEquals("izquierdo", captured.shots.get(0).cameraId);
+            assertEquals("derecho", captured.shots.get(1).cameraId);
+            assertTrue(captured.skewNanos <= PairedCapture.DEFAULT_TOLERANCE_NANOS);
+            for (PairedCapture.Shot shot : captured.shots) {
+                assertEquals(WIDTH * HEIGHT, shot.argb.length);
+                assertTrue("La captura debe ser posterior al pedido", shot.frame.timestampNanos > requestedAt);
+            }
+            long a = captured.shots.get(0).frame.timestampNanos;
+            long b = captured.shots.get(1).frame.timestampNanos;
+            assertEquals(Math.abs(a - b), captured.skewNanos);
+        }
+    }
+
+    @Test
+    public void pairedCaptureRejectsWhenOneCameraHasNoUsableFrame() throws Exception {
+        SyntheticFrameSource scene = new SyntheticFrameSource(WIDTH, HEIGHT, 0);
+        // Escena uniforme: sin pie en el encuadre, el filtro de calidad nunca la acepta
+        ThermalFrame blank = new ThermalFrame(WIDTH, HEIGHT);
+        Arrays.fill(blank.raw, ThermalFrame.toRaw(22.0));
+        FramePipeline good = start(null, null, null);
+        FramePipeline empty = start(null, null, null);
+
+        Map<String, FramePipeline> cameras = new LinkedHashMap<>();
+        cameras.put("izquierdo", good);
+        cameras.put("derecho", empty);
+        AtomicReference<Result> result = request(cameras);
+
+        // El rechazo depende del plazo de captura, que corre con el reloj real
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (result.get() == null) {
+            assertTrue("La captura pareada no terminó", System.nanoTime() < deadline);
+            deliver(good, scene.next(), System.nanoTime());
+            deliver(empty, blank, System.nanoTime());
+            Thread.sleep(10);
+        }
+
+        assertNull(result.get().shots);
+        assertNotNull(result.get().rejection);
+        assertTrue(result.get().rejection, result.get().rejection.startsWith("derecho: "));
+        assertEquals(1, good.getStats().captures.get());
+    }
+
+    /**
+     * Pipeline con una vista que no hace nada, o que avisa al recibir el primer frame y espera a
+     * ser liberada. Si se da una fuente, sus frames van al pipeline; si no, la prueba los entrega.
+     */
+    private FramePipeline start(FrameSource source, CountDownLatch entered, CountDownLatch released) {
+        FramePipeline pipeline = new FramePipeline();
+        pipeline.setSink(new FramePipeline.FrameSink() {
+            @Override
+            public void onFrame(int[] argb, int width, int height, String info) {
+                if (entered == null) return;
+                entered.countDown();
+                try {
+                    if (!released.await(10, TimeUnit.SECONDS)) sourceError.compareAndSet(null, "La vista nunca se liberó");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onScaleChanged(int[] scaleArgb, int scaleWidth, int scaleHeight, float minCelsius, float maxCelsius) {
+            }
+        });
+        pipeline.start();
+        pipelines.add(pipeline);
+        if (source == null) return pipeline;
+
+        source.start(new FrameSource.Callback() {
+            @Override
+            public void onFrame(ThermalFrame frame) {
+                pipeline.process(frame);
+            }
+
+            @Override
+            public void onError(String message) {
+                sourceError.compareAndSet(null, message);
+            }
+        });
+        sources.add(source);
+        return pipeline;
+    }
+
+    private static void deliver(FramePipeline pipeline, ThermalFrame frame, long timestampNanos) {
+        frame.timestampNanos = timestampNanos;
+        pipeline.process(frame);
+    }
+
+    /**
+     * Espera a que el pipeline reciba la cantidad dada de frames
+     */
+    private static void awaitFramesIn(FramePipeline pipeline, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pipeline.getStats().framesIn.get() < count) {
+            assertTrue("El pipeline recibió " + pipeline.getStats().framesIn.get() + " de " + count + " frames",
+                    System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Pide una captura pareada; el resultado queda en la referencia al terminar
+     */
+    private static AtomicReference<Result> request(Map<String, FramePipeline> cameras) {
+        AtomicReference<Result> result = new AtomicReference<>();
+        new PairedCapture(cameras, PairedCapture.DEFAULT_TOLERANCE_NANOS, new PairedCapture.Callback() {
+            @Override
+            public void onCaptured(List<PairedCapture.Shot> shots, long skewNanos) {
+                result.set(new Result(shots, skewNanos, null));
+            }
+
+            @Override
+            public void onRejected(String reason) {
+                result.set(new Result(null, 0, reason));
+            }
+        }).start();
+        return result;
+    }
+
+    private static class Result {
+        final List<PairedCapture.Shot> shots;
+        final long skewNanos;
+        final String rejection;
+
+        Result(List<PairedCapture.Shot> shots, long skewNanos, String rejection) {
+            this.shots = shots;
+            this.skewNanos = skewNanos;
+            this.rejection = rejection;
+        }
+    }
+
+    /**
+     * Entrega frames de varias cámaras desde un único hilo, como el SDK; cada entrega la
+     * dispara la prueba con {@link #tick()}
+     */
+    private static class SharedDelivery {
+        final ThermalFrame[] frames;
+        final FrameSource.Callback[] callbacks;
+        private int seed = 0x2545F491;
+
+        SharedDelivery(int cameras) {
+            this.frames = new ThermalFrame[cameras];
+            this.callbacks = new FrameSource.Callback[cameras];
+            for (int i = 0; i < cameras; i++) frames[i] = new ThermalFrame(WIDTH, HEIGHT);
+        }
+
+        FrameSource camera(int index) {
+            return new FrameSource() {
+                @Override
+                public void start(Callback callback) {
+                    callbacks[index] = callback;
+                }
+
+                @Override
+                public void stop() {
+                    callbacks[index] = null;
+                }
+
+                @Override
+                public boolean isStreaming() {
+                    return callbacks[index] != null;
+                }
+            };
+        }
+
+        void tick() {
+            for (int i = 0; i < frames.length; i++) {
+                FrameSource.Callback callback = callbacks[i];
+                if (callback == null) continue;
+                fill(frames[i]);
+                callback.onFrame(frames[i]);
+            }
+        }
+
+        /**
+         * Gradiente con ruido distinto en cada frame, para que todos se coloreen
+         */
+        private void fill(ThermalFrame frame) {
+            short[] raw = frame.raw;
+            int s = seed;
+            for (int i = 0; i < raw.length; i++) {
+                s ^= s << 13;
+                s ^= s >>> 17;
+                s ^= s << 5;
+                raw[i] = (short) (27315 + 2200 + (i % WIDTH) * 8 + (s & 0x3F));
+            }
+            seed = s;
+            frame.timestampNanos = System.nanoTime();
+        }
+    }
+}
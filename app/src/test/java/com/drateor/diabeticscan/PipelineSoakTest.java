@@ -0,0 +1,175 @@
+package com.drateor.diabeticscan;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prueba de resistencia del pipeline stream → visualización → captura → inferencia
+ * con una fuente sintética, sin cámara ni Android.
+ *
+ * Duración y umbrales configurables por propiedades del sistema, por ejemplo:
+ * ./gradlew :app:testDebugUnitTest --tests '*PipelineSoakTest*' -Dsoak.durationSec=300
+ */
+public class PipelineSoakTest {
+
+    private static final int WIDTH = Integer.getInteger("soak.width", 160);
+    private static final int HEIGHT = Integer.getInteger("soak.height", 120);
+    private static final double FPS = Double.parseDouble(System.getProperty("soak.fps", "30"));
+    private static final int DURATION_SEC = Integer.getInteger("soak.durationSec", 10);
+
+    private static final double MIN_FPS_RATIO = Double.parseDouble(System.getProperty("soak.minFpsRatio", "0.9"));
+    private static final double MAX_P99_MS = Double.parseDouble(System.getProperty("soak.maxP99Ms", "50"));
+    private static final double MAX_ALLOC_MB_PER_SEC = Double.parseDouble(System.getProperty("soak.maxAllocMBps", "2"));
+    private static final double MAX_PEAK_HEAP_MB = Double.parseDouble(System.getProperty("soak.maxPeakHeapMB", "256"));
+
+    private static final String[] LABELS = {"ClaseA", "ClaseB", "ClaseC", "ClaseD"};
+
+    @Test
+    public void sustainsThroughputAndMemory() throws Exception {
+        SyntheticFrameSource source = new SyntheticFrameSource(WIDTH, HEIGHT, FPS);
+        FramePipeline pipeline = new FramePipeline();
+        AtomicLong displayChecksum = new AtomicLong();
+        AtomicLong classified = new AtomicLong();
+        AtomicLong scaleUpdates = new AtomicLong();
+        AtomicLong rejections = new AtomicLong();
+        // Los errores llegan en hilos del pipeline, donde un fail() no haría fallar la prueba
+        AtomicReference<String> error = new AtomicReference<>();
+
+        // Visualización: recorrer los píxeles como lo haría la copia a un Bitmap
+        pipeline.setSink(new FramePipeline.FrameSink() {
+            @Override
+            public void onFrame(int[] argb, int width, int height, String info) {
+                long sum = 0;
+                for (int pixel : argb) sum += pixel;
+                displayChecksum.addAndGet(sum);
+            }
+
+            @Override
+            public void onScaleChanged(int[] scaleArgb, int scaleWidth, int scaleHeight, float minCelsius, float maxCelsius) {
+                scaleUpdates.incrementAndGet();
+            }
+        });
+        // Inferencia simulada: media de temperatura con el mismo costo por píxel que preprocesar
+        pipeline.setClassifier((frame, argb) -> {
+            double total = 0;
+            for (int i = 0; i < frame.raw.length; i++) total += frame.celsiusAt(i);
+            return LABELS[(int) (total / frame.raw.length) & 3];
+        }, 3, result -> classified.incrementAndGet());
+
+        resetPeakHeap();
+        pipeline.start();
+        source.start(new FrameSource.Callback() {
+            @Override
+            public void onFrame(ThermalFrame frame) {
+                pipeline.process(frame);
+            }
+
+            @Override
+            public void onError(String message) {
+                error.compareAndSet(null, message);
+            }
+        });
+
+        long startNanos = System.nanoTime();
+        long captures = 0;
+        for (int second = 0; second < DURATION_SEC; second++) {
+            Thread.sleep(1000);
+            // Se espera cada captura antes de pedir la siguiente, así el conteo final es exacto
+            CountDownLatch done = new CountDownLatch(1);
+            pipeline.requestCapture(new FramePipeline.CaptureCallback() {
+                @Override
+                public void onCaptured(ThermalFrame frame, int[] argb) {
+                    if (argb.length != frame.raw.length) {
+                        error.compareAndSet(null, "captura de " + argb.length + " píxeles para " + frame.raw.length);
+                    }
+                    done.countDown();
+                }
+
+                @Override
+                public void onRejected(String reason) {
+                    rejections.incrementAndGet();
+                    done.countDown();
+                }
+            });
+            captures++;
+            assertTrue("la captura " + captures + " no terminó", done.await(10, TimeUnit.SECONDS));
+        }
+        long allocatedBytes = allocatedBytes("synthetic-source", "live-inference");
+        double elapsedSec = (System.nanoTime() - startNanos) / 1e9;
+
+        source.stop();
+        pipeline.stop();
+
+        PipelineStats stats = pipeline.getStats();
+        // Los frames sin cambios también atraviesan el pipeline, solo que sin volver a dibujarse
+        double fps = stats.framesIn.get() / elapsedSec;
+        double p50 = stats.latencyPercentileNanos(50) / 1e6;
+        double p95 = stats.latencyPercentileNanos(95) / 1e6;
+        double p99 = stats.latencyPercentileNanos(99) / 1e6;
+        double allocMBps = allocatedBytes / elapsedSec / (1024.0 * 1024.0);
+        double peakHeapMB = peakHeapBytes() / (1024.0 * 1024.0);
+
+        System.out.println(String.format(Locale.US,
+                "soak %dx%d @ %.0f fps, %.0f s: %.1f fps sostenidos, latencia p50 %.2f ms p95 %.2f ms p99 %.2f ms, "
+                        + "saltados sin cambios %.0f%%, asignación %.2f MB/s, pico de heap %.1f MB, inferencias %d (omitidas %d), "
+                        + "capturas %d/%d, calidad %s (%d frames sin colorear)",
+                WIDTH, HEIGHT, FPS, elapsedSec, fps, p50, p95, p99, stats.getSkipRate() * 100, allocMBps, peakHeapMB,
+                stats.inferencesRun.get(), stats.inferencesSkipped.get(), stats.captures.get(), captures,
+                pipeline.getGovernor().getLevel(), stats.framesThrottled.get()));
+
+        assertTrue("fps sostenidos " + fps, fps >= FPS * MIN_FPS_RATIO);
+        assertTrue("latencia p99 " + p99 + " ms", p99 <= MAX_P99_MS);
+        assertTrue("asignación " + allocMBps + " MB/s", allocMBps <= MAX_ALLOC_MB_PER_SEC);
+        assertTrue("pico de heap " + peakHeapMB + " MB", peakHeapMB <= MAX_PEAK_HEAP_MB);
+        assertTrue("sin inferencias", classified.get() > 0);
+        assertTrue("sin escala", scaleUpdates.get() > 0);
+        assertNull(error.get(), error.get());
+        // La escena sintética siempre es apta: ninguna captura se rechaza
+        assertEquals(0, rejections.get());
+        assertEquals(captures, stats.captures.get());
+    }
+
+    /**
+     * Bytes asignados en total por los hilos del pipeline (deben seguir vivos)
+     */
+    private static long allocatedBytes(String... threadNames) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return 0;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            for (String name : threadNames) {
+                if (thread.getName().equals(name)) {
+                    total += Math.max(0, threads.getThreadAllocatedBytes(thread.getId()));
+                }
+            }
+        }
+        return total;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) total += pool.getPeakUsage().getUsed();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,136 @@
+package com.drateor.diabeticscan;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ida y vuelta de {@link RadiometricRecorder} → {@link RadiometricRecording}: codificación
+ * zigzag/delta, índice y reconstrucción del índice de una grabación cortada.
+ */
+public class RadiometricRecordingTest {
+
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 24;
+    private static final int FRAMES = RadiometricRecorder.KEYFRAME_INTERVAL * 2 + 10;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("grabacion", ".dsr").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void zigzagRoundTrip() {
+        int[] values = {0, 1, -1, 2, -2, 0xFFFF, -0xFFFF, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int value : values) {
+            assertEquals(value, RadiometricRecorder.unzigzag(RadiometricRecorder.zigzag(value)));
+        }
+        assertEquals(1, RadiometricRecorder.zigzag(-1));
+        assertEquals(2, RadiometricRecorder.zigzag(1));
+    }
+
+    @Test
+    public void framesRoundTripSequentiallyAndByIndex() throws IOException {
+        List<ThermalFrame> written = record(FRAMES);
+
+        RadiometricRecording recording = new RadiometricRecording(file);
+        assertEquals(WIDTH, recording.getWidth());
+        assertEquals(HEIGHT, recording.getHeight());
+        assertEquals(FRAMES, recording.getFrameCount());
+
+        ThermalFrame out = new ThermalFrame(WIDTH, HEIGHT);
+        for (int i = 0; i < FRAMES; i++) {
+            recording.readFrame(i, out);
+            assertFrameEquals(written.get(i), out);
+            assertEquals(written.get(i).timestampNanos, recording.getTimestampNanos(i));
+        }
+
+        // Saltos hacia atrás y a mitad de un grupo de frames delta
+        int[] jumps = {FRAMES - 1, 3, RadiometricRecorder.KEYFRAME_INTERVAL + 5, 0, RadiometricRecorder.KEYFRAME_INTERVAL};
+        for (int index : jumps) {
+            recording.readFrame(index, out);
+            assertFrameEquals(written.get(index), out);
+        }
+    }
+
+    @Test
+    public void rebuildsIndexOfTruncatedRecording() throws IOException {
+        List<ThermalFrame> written = record(FRAMES);
+        RadiometricRecording complete = new RadiometricRecording(file);
+        long lastFrameOffset = lastFrameOffset(complete);
+
+        // Corte a mitad del último frame: se pierden ese frame y el índice
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(lastFrameOffset + RadiometricRecorder.FRAME_HEADER_BYTES + 5);
+        }
+
+        RadiometricRecording truncated = new RadiometricRecording(file);
+        assertEquals(FRAMES - 1, truncated.getFrameCount());
+        ThermalFrame out = new ThermalFrame(WIDTH, HEIGHT);
+        for (int i = 0; i < FRAMES - 1; i++) {
+            truncated.readFrame(i, out);
+            assertFrameEquals(written.get(i), out);
+        }
+    }
+
+    /**
+     * Graba frames con valores extremos y saltos grandes, para cubrir las diferencias de 17 bits
+     */
+    private List<ThermalFrame> record(int count) throws IOException {
+        Random random = new Random(42);
+        List<ThermalFrame> frames = new ArrayList<>();
+        RadiometricRecorder recorder = new RadiometricRecorder(file, WIDTH, HEIGHT);
+        for (int n = 0; n < count; n++) {
+            ThermalFrame frame = new ThermalFrame(WIDTH, HEIGHT);
+            for (int i = 0; i < frame.raw.length; i++) {
+                int value;
+                if (i == 0) value = n % 2 == 0 ? 0 : 0xFFFF;
+                else if (i % 7 == 0) value = random.nextInt(0x10000);
+                else value = 30000 + i + n;
+                frame.raw[i] = (short) value;
+            }
+            frame.timestampNanos = 1_000_000L * n;
+            recorder.offer(frame);
+            frames.add(frame);
+        }
+        recorder.close();
+        assertEquals(count, recorder.getFrameCount());
+        assertEquals(0, recorder.getDroppedFrames());
+        return frames;
+    }
+
+    private long lastFrameOffset(RadiometricRecording recording) throws IOException {
+        // El primer frame empieza tras la cabecera; los siguientes, tras el payload del anterior
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long position = RadiometricRecorder.HEADER_BYTES;
+            for (int i = 0; i < recording.getFrameCount() - 1; i++) {
+                raf.seek(position);
+                int payload = Integer.reverseBytes(raf.readInt());
+                position += RadiometricRecorder.FRAME_HEADER_BYTES + payload;
+            }
+            return position;
+        }
+    }
+
+    private static void assertFrameEquals(ThermalFrame expected, ThermalFrame actual) {
+        assertArrayEquals(expected.raw, actual.raw);
+        assertEquals(expected.timestampNanos, actual.timestampNanos);
+    }
+}
@@ -0,0 +1,317 @@
+package com.drateor.diabeticscan;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sincronización de capturas contra un servidor HTTP local que implementa el protocolo de
+ * {@link ScanUploader} y puede cortar envíos a mitad de lote.
+ */
+public class ScanSyncTest {
+
+    private File dir;
+    private MockServer server;
+    private FakePower power;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("scan-sync").toFile();
+        server = new MockServer();
+        power = new FakePower();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        deleteRecursively(dir);
+    }
+
+    @Test
+    public void sendsBatchesAndResumesAfterInterruptedUpload() throws Exception {
+        ScanQueue queue = new ScanQueue(new File(dir, "cola"));
+        List<byte[]> scans = enqueue(queue, 7);
+        List<String> names = namesOf(queue);
+
+        // El primer envío se corta después de recibir dos capturas completas
+        server.interruptAfter = 2;
+        ScanUploader uploader = uploader(queue).setBatchLimits(3, Long.MAX_VALUE);
+
+        assertTrue(uploader.getLastError(), uploader.drain());
+        assertEquals(0, queue.size());
+        assertEquals(names, server.receivedNames());
+        for (int i = 0; i < scans.size(); i++) {
+            assertArrayEquals(scans.get(i), server.receivedContent(names.get(i)));
+        }
+        // 3 lotes (3 + 3 + 1) y un reintento del primero desde la tercera captura
+        assertEquals(3, server.batches.size());
+        assertEquals(Arrays.asList(0, 2, 0, 0), server.postOffsets);
+        // Las capturas ya vienen comprimidas: el cuerpo no se recomprime
+        assertFalse("El cuerpo no debe recomprimirse", server.anyEncoded);
+    }
+
+    @Test
+    public void resumesSameBatchAfterRestart() throws Exception {
+        File queueDir = new File(dir, "cola");
+        ScanQueue queue = new ScanQueue(queueDir);
+        enqueue(queue, 4);
+
+        server.interruptAfter = 1;
+        assertFalse(uploader(queue).setRetry(1, 0, 0).drain());
+        assertEquals(4, queue.size());
+
+        // Proceso nuevo sobre la misma cola: sigue el mismo lote desde lo ya recibido
+        ScanQueue reopened = new ScanQueue(queueDir);
+        assertTrue(uploader(reopened).drain());
+        assertEquals(1, server.batches.size());
+        assertEquals(Arrays.asList(0, 1), server.postOffsets);
+        assertEquals(4, server.receivedNames().size());
+    }
+
+    @Test
+    public void respectsBatteryAndDataBudget() throws Exception {
+        ScanQueue queue = new ScanQueue(new File(dir, "cola"));
+        enqueue(queue, 3);
+
+        power.batteryPercent = 10;
+        ScanUploader uploader = uploader(queue);
+        assertFalse(uploader.drain());
+        assertEquals("Batería baja", uploader.getLastError());
+        assertEquals(0, server.requests);
+
+        power.charging = true;
+        power.metered = true;
+        assertFalse(uploader.drain());
+        assertEquals("Red medida", uploader.getLastError());
+
+        // Cupo diario de 1 byte: se envía un lote y se corta hasta el día siguiente
+        power.metered = false;
+        SyncBudget tiny = new SyncBudget(new File(dir, "cupo.txt"), power, () -> 0L, 1, 30, 0, false);
+        ScanUploader limited = new ScanUploader(server.url(), queue, tiny, millis -> {
+        }).setBatchLimits(1, Long.MAX_VALUE);
+        assertFalse(limited.drain());
+        assertEquals("Cupo diario agotado", limited.getLastError());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void buildsBatchesWithinRemainingBudget() throws Exception {
+        ScanQueue queue = new ScanQueue(new File(dir, "cola"));
+        enqueue(queue, 3);
+
+        // Cupo de 50 000 bytes: el lote lleva solo las capturas que entran (20 000 + 21 000),
+        // aunque el límite por lote permita tres
+        AtomicLong now = new AtomicLong(0);
+        SyncBudget budget = new SyncBudget(new File(dir, "cupo.txt"), power, now::get, 50_000, 30, 0, false);
+        ScanUploader uploader = new ScanUploader(server.url(), queue, budget, millis -> {
+        }).setBatchLimits(3, Long.MAX_VALUE);
+        assertFalse(uploader.drain());
+        assertEquals(1, server.batches.size());
+        assertEquals(2, server.receivedNames().size());
+
+        // La captura que ya no entra en el resto del cupo espera al día siguiente
+        assertEquals("Cupo diario insuficiente para el lote", uploader.getLastError());
+        assertEquals(1, queue.size());
+
+        // Lo enviado se persiste: otro proceso ve el mismo consumo
+        SyncBudget reloaded = new SyncBudget(new File(dir, "cupo.txt"), power, now::get, 50_000, 30, 0, false);
+        assertEquals(budget.bytesToday(), reloaded.bytesToday());
+        assertTrue(reloaded.bytesToday() >= 41_000);
+        assertFalse(new File(dir, "cupo.txt.tmp").exists());
+
+        // Al día siguiente el cupo se renueva y sale el resto
+        now.set(TimeUnit.DAYS.toMillis(1));
+        assertTrue(uploader.getLastError(), uploader.drain());
+        assertEquals(0, queue.size());
+        assertEquals(3, server.receivedNames().size());
+    }
+
+    @Test
+    public void labelTravelsInScanName() throws Exception {
+        ScanQueue queue = new ScanQueue(new File(dir, "cola"));
+        enqueue(queue, 1);
+        ScanQueue.Entry labeled = queue.add(1_700_000_000_500L, "par-ab12_cam-usb:3_pie-derecho_desfase-12ms",
+                out -> out.write(new byte[]{1, 2, 3}));
+
+        assertEquals("par-ab12_cam-usb-3_pie-derecho_desfase-12ms", labeled.label);
+        assertEquals(1_700_000_000_500L, labeled.capturedAtMillis);
+        assertEquals("", queue.pending().get(0).label);
+        assertEquals(labeled.name, queue.pending().get(1).name);
+
+        assertTrue(uploader(queue).drain());
+        assertEquals(labeled.name, server.receivedNames().get(1));
+    }
+
+    private ScanUploader uploader(ScanQueue queue) {
+        SyncBudget budget = new SyncBudget(new File(dir, "cupo.txt"), power);
+        // Sin esperas reales entre reintentos
+        return new ScanUploader(server.url(), queue, budget, millis -> {
+        });
+    }
+
+    private static List<byte[]> enqueue(ScanQueue queue, int count) throws IOException {
+        List<byte[]> scans = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Contenido distinto en cada captura
+            byte[] data = new byte[20_000 + i * 1000];
+            for (int j = 0; j < data.length; j++) data[j] = (byte) ((j / 64) * (i + 1));
+            queue.add(1_700_000_000_000L + i, out -> out.write(data));
+            scans.add(data);
+        }
+        return scans;
+    }
+
+    private static List<String> namesOf(ScanQueue queue) {
+        List<String> names = new ArrayList<>();
+        for (ScanQueue.Entry entry : queue.pending()) names.add(entry.name);
+        return names;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        file.delete();
+    }
+
+    private static class FakePower implements SyncBudget.PowerState {
+        volatile boolean charging = false;
+        volatile int batteryPercent = 80;
+        volatile boolean metered = false;
+
+        @Override
+        public boolean isCharging() {
+            return charging;
+        }
+
+        @Override
+        public int batteryPercent() {
+            return batteryPercent;
+        }
+
+        @Override
+        public boolean isNetworkMetered() {
+            return metered;
+        }
+    }
+
+    /**
+     * Servidor de la clínica simulado: guarda las capturas completas de cada lote
+     */
+    private static class MockServer {
+        final HttpServer http;
+        final Map<String, List<String>> batches = new HashMap<>();
+        final Map<String, byte[]> contents = new HashMap<>();
+        final List<String> order = new ArrayList<>();
+        final List<Integer> postOffsets = new ArrayList<>();
+        volatile int interruptAfter = -1;
+        volatile int requests = 0;
+        volatile boolean anyEncoded = false;
+
+        MockServer() throws IOException {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            http.createContext("/api/lotes/", this::handle);
+            http.start();
+        }
+
+        URL url() {
+            try {
+                return new URL("http://127.0.0.1:" + http.getAddress().getPort() + "/api");
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        void stop() {
+            http.stop(0);
+        }
+
+        synchronized List<String> receivedNames() {
+            return new ArrayList<>(order);
+        }
+
+        synchronized byte[] receivedContent(String name) {
+            return contents.get(name);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests++;
+            String path = exchange.getRequestURI().getPath();
+            String batchId = path.substring(path.lastIndexOf('/') + 1);
+            try {
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    List<String> received;
+                    synchronized (this) {
+                        received = batches.get(batchId);
+                    }
+                    if (received == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        exchange.getResponseHeaders().set(ScanUploader.RECEIVED_HEADER, Integer.toString(received.size()));
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                    return;
+                }
+
+                int offset = Integer.parseInt(exchange.getRequestHeaders().getFirst(ScanUploader.OFFSET_HEADER));
+                List<String> received;
+                synchronized (this) {
+                    postOffsets.add(offset);
+                    received = batches.computeIfAbsent(batchId, id -> new ArrayList<>());
+                }
+                if (offset != received.size()) {
+                    exchange.sendResponseHeaders(409, -1);
+                    return;
+                }
+                if (exchange.getRequestHeaders().getFirst("Content-Encoding") != null) anyEncoded = true;
+
+                DataInputStream in = new DataInputStream(exchange.getRequestBody());
+                int limit = interruptAfter;
+                int accepted = 0;
+                while (true) {
+                    String name = in.readUTF();
+                    if (name.isEmpty()) break;
+                    in.readLong();
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    synchronized (this) {
+                        received.add(name);
+                        order.add(name);
+                        contents.put(name, data);
+                    }
+                    if (limit >= 0 && ++accepted == limit) {
+                        // Corte a mitad de lote: solo se falla una vez
+                        interruptAfter = -1;
+                        exchange.getResponseHeaders().set(ScanUploader.RECEIVED_HEADER, Integer.toString(received.size()));
+                        exchange.sendResponseHeaders(503, -1);
+                        return;
+                    }
+                }
+                exchange.getResponseHeaders().set(ScanUploader.RECEIVED_HEADER, Integer.toString(received.size()));
+                exchange.sendResponseHeaders(200, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}